@@ -0,0 +1,111 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+package diseasesim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ticks/sec of the object engine (World with Environment, Human and Mosquito objects) and of
+ * the struct-of-arrays ArrayEngine on the same lattice, plus World.countInfections.
+ * Run with -prof gc for the allocation rate per tick (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EngineBenchmark {
+
+	@Param({"100", "300"})
+	int size;
+
+	@Param({"2", "10"})
+	double humanDensity;
+
+	@Param({"0.5"})
+	double mosquitoDensity;
+
+	//mosquitoDensity only matters with compartments, see World.useMosquitoCompartments
+	@Param({"agents", "compartments"})
+	String mosquitoModel;
+
+	World world;
+	ArrayEngine engine;
+	long engineTick;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		world = new World(size, size, 3600.0, mosquitoDensity, humanDensity, 55);
+		world.setEventSink(new NullEventSink());
+		world.useMosquitoCompartments(BatchRunner.parseMosquitoModel(mosquitoModel));
+		world.introduceInfection("ACGT");
+		world.tick();
+		engine = ArrayEngine.populate(size, size, 3600.0, humanDensity, 55);
+		engine.tick(0, 12);
+		engineTick = 1;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		World.setCurrent(null);
+	}
+
+	/**
+	 * one World.tick on the object engine
+	 */
+	@Benchmark
+	public void worldTick()
+	{
+		world.tick();
+	}
+
+	/**
+	 * one tick of the struct-of-arrays engine
+	 */
+	@Benchmark
+	public void arrayEngineTick()
+	{
+		engine.tick(engineTick, (int)((engineTick + 12) % 24));
+		engineTick++;
+	}
+
+	@Benchmark
+	public int countInfections()
+	{
+		return world.countInfections();
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+package diseasesim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * the per location work of a tick on a single location of a 1x1 world, where every move
+ * stays in place: Environment.tick (bites and agent ticks) and the exit/entrance buffers
+ * when half of the inhabitants leave and come back, as happens during the day.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EnvironmentBenchmark {
+
+	@Param({"10", "100", "1000"})
+	int humans;
+
+	World world;
+	Environment location;
+	Agent[] inhabitants;
+	int round;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		world = new World(1, 1, 3600.0, 0.5, 0, 55);
+		world.setEventSink(new NullEventSink());
+		location = world.getLocation(0, 0);
+		inhabitants = new Agent[humans];
+		for(int i = 0; i < humans; i++)
+		{
+			inhabitants[i] = new Human(0, 0);
+			location.enter(inhabitants[i]);
+		}
+		location.doEntrances();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		World.setCurrent(null);
+	}
+
+	/**
+	 * Environment.tick on every inhabitant
+	 */
+	@Benchmark
+	public void tick()
+	{
+		location.tick(3600.0);
+		location.doExits();
+		location.doEntrances();
+	}
+
+	/**
+	 * half of the inhabitants exit and re-enter, then doExits and doEntrances
+	 */
+	@Benchmark
+	public int exitsAndEntrances()
+	{
+		for(int i = round++ & 1; i < inhabitants.length; i += 2)
+		{
+			location.exit(inhabitants[i]);
+			location.enter(inhabitants[i]);
+		}
+		location.doExits();
+		location.doEntrances();
+		return location.getPopulation();
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+package diseasesim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * compares the original two-draw halving loop against LevyFlight's single draw samplers
+ * and Agent.levyFlight, one jump per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LevyFlightBenchmark {
+
+	SimRandom rng = new SimRandom(55);
+	LevyFlight geometric = LevyFlight.geometric(LevyFlight.Border.CLAMP);
+	LevyFlight powerLaw = LevyFlight.powerLaw(1.5, 1000, LevyFlight.Border.REFLECT);
+
+	/**
+	 * Agent.levyFlight before LevyFlight, kept here for comparison
+	 */
+	static int legacyLevyFlight(int startingPosition, SimRandom rng)
+	{
+		int count = 0;
+		int displacement;
+		double test = 0.5;
+		if(rng.nextDouble() < 0.5)
+		{
+			displacement = 1;
+		}
+		else
+		{
+			displacement = -1;
+		}
+		double randomSample = rng.nextDouble();
+		while(randomSample < test)
+		{
+			count++;
+			test = test / 2;
+		}
+		return count * displacement + startingPosition;
+	}
+
+	@Benchmark
+	public int legacy()
+	{
+		return legacyLevyFlight(500, rng);
+	}
+
+	@Benchmark
+	public int agentLevyFlight()
+	{
+		return Agent.levyFlight(500, rng);
+	}
+
+	@Benchmark
+	public int geometric()
+	{
+		return geometric.jump(500, 1000, rng);
+	}
+
+	@Benchmark
+	public int powerLaw()
+	{
+		return powerLaw.jump(500, 1000, rng);
+	}
+}
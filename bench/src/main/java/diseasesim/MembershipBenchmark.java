@@ -0,0 +1,117 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+package diseasesim;
+
+import java.util.ArrayList;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * compares the old Vector based location membership against AgentList.
+ * Each operation half of a location's agents leave and come back, which is what
+ * doExits/doEntrances see when half of the humans move during the day.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MembershipBenchmark {
+
+	@Param({"10", "100", "1000"})
+	int agentsPerLocation;
+
+	//AgentList keeps each agent's slot, so each implementation gets its own agents
+	Agent[] vectorAgents;
+	Agent[] listAgents;
+	int round;
+	//the old Environment: synchronized Vectors and a linear Vector.remove per exit
+	Vector<Agent> vectorInhabitants;
+	Vector<Agent> vectorEntrants;
+	Vector<Agent> vectorExitants;
+	//the new Environment: AgentList with swap-remove and unsynchronized buffers
+	AgentList listInhabitants;
+	ArrayList<Agent> listEntrants;
+	ArrayList<Agent> listExitants;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		vectorAgents = new Agent[agentsPerLocation];
+		listAgents = new Agent[agentsPerLocation];
+		vectorInhabitants = new Vector<Agent>();
+		vectorEntrants = new Vector<Agent>();
+		vectorExitants = new Vector<Agent>();
+		listInhabitants = new AgentList();
+		listEntrants = new ArrayList<Agent>();
+		listExitants = new ArrayList<Agent>();
+		for(int i = 0; i < agentsPerLocation; i++)
+		{
+			vectorAgents[i] = new Agent("BENCH", 0, 0);
+			vectorInhabitants.add(vectorAgents[i]);
+			listAgents[i] = new Agent("BENCH", 0, 0);
+			listInhabitants.add(listAgents[i]);
+		}
+	}
+
+	@Benchmark
+	public int vector()
+	{
+		for(int i = round++ & 1; i < vectorAgents.length; i += 2)
+		{
+			vectorExitants.add(vectorAgents[i]);
+			vectorEntrants.add(vectorAgents[i]);
+		}
+		for(Agent agent : vectorExitants) vectorInhabitants.remove(agent);
+		vectorExitants.clear();
+		for(Agent agent : vectorEntrants) vectorInhabitants.add(agent);
+		vectorEntrants.clear();
+		return vectorInhabitants.size();
+	}
+
+	@Benchmark
+	public int agentList()
+	{
+		for(int i = round++ & 1; i < listAgents.length; i += 2)
+		{
+			listExitants.add(listAgents[i]);
+			listEntrants.add(listAgents[i]);
+		}
+		for(int i = 0; i < listExitants.size(); i++) listInhabitants.remove(listExitants.get(i));
+		listExitants.clear();
+		for(int i = 0; i < listEntrants.size(); i++) listInhabitants.add(listEntrants.get(i));
+		listEntrants.clear();
+		return listInhabitants.size();
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+package diseasesim;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * contention on the entrance buffers: a fork-join pool of up to 64 threads moves every
+ * agent of a set into a few shared locations at once, as the bands of a parallel tick do,
+ * then the entrants are taken. "lockFree" is Environment.enter, "locked" is the
+ * synchronized list enter() used before, kept here for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MoveBenchmark {
+
+	@Param({"1", "8", "32", "64"})
+	int threads;
+
+	//the number of locations the agents move into
+	@Param({"1", "16"})
+	int locations;
+
+	@Param({"lockFree", "locked"})
+	String queue;
+
+	@Param({"16384"})
+	int agents;
+
+	World world;
+	ForkJoinPool pool;
+	Environment[] destinations;
+	ArrayList<Agent>[] lockedEntrants;
+	Agent[] movers;
+	ArrayList<Agent> taken = new ArrayList<Agent>();
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp()
+	{
+		world = new World(1, locations, 3600.0, 0, 0, 55);
+		pool = new ForkJoinPool(threads);
+		destinations = new Environment[locations];
+		lockedEntrants = new ArrayList[locations];
+		for(int i = 0; i < locations; i++)
+		{
+			destinations[i] = world.getLocation(0, i);
+			lockedEntrants[i] = new ArrayList<Agent>();
+		}
+		movers = new Agent[agents];
+		for(int i = 0; i < agents; i++)
+		{
+			movers[i] = new Human(0, i % locations);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		pool.shutdown();
+		World.setCurrent(null);
+	}
+
+	/**
+	 * every agent enters its location from one of the pool's threads, then each location's
+	 * entrants are taken, as World.tick's entrance phase would
+	 */
+	@Benchmark
+	public int moves()
+	{
+		boolean lockFree = queue.equals("lockFree");
+		pool.invoke(new MoveTask(lockFree, 0, agents, Math.max(1, agents / threads)));
+		int count = 0;
+		for(int i = 0; i < locations; i++)
+		{
+			if(lockFree)
+			{
+				destinations[i].takeEntrants(taken);
+			}else{
+				synchronized(lockedEntrants[i])
+				{
+					taken.addAll(lockedEntrants[i]);
+					lockedEntrants[i].clear();
+				}
+			}
+			count += taken.size();
+			taken.clear();
+		}
+		return count;
+	}
+
+	/**
+	 * enters a range of the movers, split until it is a slice per thread
+	 */
+	private class MoveTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final boolean lockFree;
+		private final int first;
+		private final int end;
+		private final int grain;
+
+		MoveTask(boolean lockFree, int first, int end, int grain)
+		{
+			this.lockFree = lockFree;
+			this.first = first;
+			this.end = end;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(end - first <= grain)
+			{
+				for(int i = first; i < end; i++)
+				{
+					int location = i % locations;
+					if(lockFree)
+					{
+						destinations[location].enter(movers[i]);
+					}else{
+						synchronized(lockedEntrants[location])
+						{
+							lockedEntrants[location].add(movers[i]);
+						}
+						world.activate(0, location);
+					}
+				}
+			}else{
+				int middle = (first + end) >>> 1;
+				invokeAll(new MoveTask(lockFree, first, middle, grain),
+						new MoveTask(lockFree, middle, end, grain));
+			}
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+package diseasesim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * cost of World.tick on a sparse lattice, where occupancy is the fraction of locations
+ * that are home to at least one human. Since tick only visits active locations the time
+ * per tick should follow occupancy rather than the size of the lattice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OccupancyBenchmark {
+
+	@Param({"500"})
+	int size;
+
+	@Param({"0.05", "0.5"})
+	double occupancy;
+
+	World world;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		//P(at least one resident) = 1 - e^-density
+		double humanDensity = -Math.log(1 - occupancy);
+		world = new World(size, size, 3600.0, 0.5, humanDensity, 55);
+		world.setEventSink(new NullEventSink());
+		world.tick();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		World.setCurrent(null);
+	}
+
+	/**
+	 * one World.tick
+	 */
+	@Benchmark
+	public void worldTick()
+	{
+		world.tick();
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+package diseasesim;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * compares the old shared java.util.Random against the per-thread SimRandom streams
+ * on the bite decision from Environment.tick: one draw compared against Mosquito.bite_rate.
+ * Use -t to run with several threads, e.g. -t 4, to see contention on the shared Random.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RandomBenchmark {
+
+	/**
+	 * the one Random all threads used to share
+	 */
+	@State(Scope.Benchmark)
+	public static class Shared {
+		Random random = new Random(55);
+	}
+
+	/**
+	 * puts each benchmark thread's stream on a location stream, as Environment.tick does
+	 */
+	@State(Scope.Thread)
+	public static class Stream {
+		@Setup(Level.Iteration)
+		public void setUp()
+		{
+			World.getStream().setStream(55, 0, 0, 0);
+		}
+	}
+
+	@Benchmark
+	public boolean sharedRandom(Shared shared)
+	{
+		return shared.random.nextDouble() < Mosquito.bite_rate;
+	}
+
+	@Benchmark
+	public boolean threadStream(Stream stream)
+	{
+		return World.randNum() < Mosquito.bite_rate;
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+package diseasesim;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measures the cost of populating a lattice: full World construction, and the per location
+ * poisson draw on its own, old sampler against PoissonSampler and World.samplePoisson.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StartupBenchmark {
+
+	/**
+	 * the size and densities of the world to construct
+	 */
+	@State(Scope.Benchmark)
+	public static class Lattice {
+		@Param({"100", "500"})
+		int size;
+
+		@Param({"2", "10"})
+		double humanDensity;
+
+		@Param({"0.5"})
+		double mosquitoDensity;
+	}
+
+	/**
+	 * the rate to sample, and a stream to draw from
+	 */
+	@State(Scope.Thread)
+	public static class Rate {
+		@Param({"2", "20"})
+		double rate;
+
+		SimRandom rng = new SimRandom(55);
+	}
+
+	/**
+	 * the sampler World used before PoissonSampler, kept here for comparison
+	 */
+	static int legacySample(double rate, SimRandom rng)
+	{
+		double sample = rng.nextDouble();
+		int k = 0;
+		while(sample < legacyProbability(rate, k))
+		{
+			k++;
+		}
+		return k;
+	}
+
+	static double legacyProbability(double rate, int k)
+	{
+		return (Math.exp(-rate) * Math.pow(rate, k)) / legacyFactorial(k);
+	}
+
+	static long legacyFactorial(long k)
+	{
+		if(k < 1) return 1;
+		return legacyFactorial(k - 1) * k;
+	}
+
+	/**
+	 * construct a whole world, one construction per measurement
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3)
+	@Measurement(iterations = 10)
+	public World newWorld(Lattice lattice)
+	{
+		World world = new World(lattice.size, lattice.size, 3600.0, lattice.mosquitoDensity, lattice.humanDensity, 55);
+		World.setCurrent(null);
+		return world;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public int legacyPoisson(Rate rate)
+	{
+		return legacySample(rate.rate, rate.rng);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public int samplePoisson(Rate rate)
+	{
+		return World.samplePoisson(rate.rate, rate.rng);
+	}
+}
@@ -18,7 +18,8 @@
  *	email: mareklaskowski@gmail.com							*
  ****************************************************************************************/
 
-import java.util.Vector;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 /**
  * This is the base class for agents in the simulation 
  * has a unique ID (UID), maintains the current row and column in the environment lattice
@@ -27,22 +28,45 @@ import java.util.Vector;
  *
  */
 public class Agent {
-	private static long NEXT_UID = 1;
+	//UIDs for agents created outside of any World, e.g. by a stand-alone ArrayEngine
+	private static final AtomicLong NEXT_UID = new AtomicLong(1);
 	/**
 	 * gets the next UID
 	 * @return a long integer representing the next UID (unique identifier) which
-	 * will uniquely identify each agent in the system
+	 * will uniquely identify each agent in the calling thread's current world
 	 */
-	private static long getNextUID()
+	static long getNextUID()
 	{
-		return NEXT_UID++;
+		World world = World.current();
+		return world == null ? NEXT_UID.getAndIncrement() : world.nextUID();
 	}
 	
-	protected Vector<Disease> infections = new Vector<Disease>();
+	private static final Disease[] NO_INFECTIONS = new Disease[0];
+	//one record per strain this agent has ever caught, in the order they were caught
+	protected Disease[] infections = NO_INFECTIONS;
+	//bit i set while infected with strain i of the StrainRegistry
+	private long infectedMask = 0;
+	//bit i set once recovered from strain i
+	private long immunityMask = 0;
 	private int currRow;
 	private int currCol;
 	private String type = "BASIC_AGENT";
-	private long UID = getNextUID();
+	//the world this agent lives in, the one being constructed or ticked when the agent was created
+	final World world = World.current();
+	private long UID;
+	//index of this agent in its location's AgentList, see AgentList
+	int slot = -1;
+	//the location whose inhabitants include this agent, kept up to date by Environment
+	Environment location = null;
+	//true once the agent has been counted in the world's tallies
+	boolean placed = false;
+	//true once the agent has died, or moved to a location another world owns (see Decomposition)
+	boolean dead = false;
+	//the next agent waiting to enter the same location, see Environment.enter. An agent
+	//waits to enter at most one location at a time, so one link is enough
+	Agent nextEntrant = null;
+	//the location this agent waits to enter, null once it has been taken in
+	Environment entering = null;
 	
 	/**
 	 * constructor which instantiates Agent type as well as its position in the world
@@ -51,61 +75,123 @@ public class Agent {
 	 * @param currCol this agent's current position
 	 */
 	protected Agent(String type, int currRow, int currCol)
+	{
+		this(type, currRow, currCol, getNextUID());
+	}
+
+	/**
+	 * a constructor for an agent that already has a UID, e.g. one that moved in from
+	 * another world; it takes none from the current world
+	 * @param type String representing what type of agent this is
+	 * @param currRow this agent's current position
+	 * @param currCol this agent's current position
+	 * @param uid the agent's UID
+	 */
+	Agent(String type, int currRow, int currCol, long uid)
 	{
 		this.currRow = currRow;
 		this.currCol = currCol;
 		this.type = type;
+		this.UID = uid;
 	}
 
 	/**
-	 * @return the strain currently infecting the agent; returns empty string if 
-	 * this agent has never been infected
+	 * @return the StrainRegistry ID of the strain currently infecting the agent, or if none
+	 * of a strain it has recovered from; -1 if this agent has never been infected
+	 */
+	public int getStrainId()
+	{
+		long mask = infectedMask != 0 ? infectedMask : immunityMask;
+		return mask == 0 ? -1 : Long.numberOfTrailingZeros(mask);
+	}
+	/**
+	 * @return the strain currently infecting the agent, or if none a strain it has recovered
+	 * from; returns empty string if this agent has never been infected
 	 */
 	public String getStrain() {
-		String recoveredStrain = "";
-		if(infections.size() == 0){
-			return "";
-		}
-		else 
-		{
-			for(Disease disease : infections)
-			{
-				if(disease.getState() == Disease.State.INFECTED)
-				{
-					return disease.getStrain();
-				}
-				if(disease.getState() == Disease.State.RECOVERED)
-				{
-					return disease.getStrain();
-				}
-			}
-		}
-		return recoveredStrain;
+		int id = getStrainId();
+		return id < 0 ? "" : StrainRegistry.name(id);
+	}
+	/**
+	 * @return a bitset of the StrainRegistry IDs currently infecting this agent
+	 */
+	public long getInfectedMask()
+	{
+		return infectedMask;
+	}
+	/**
+	 * @return a bitset of the StrainRegistry IDs this agent has recovered from
+	 */
+	public long getImmunityMask()
+	{
+		return immunityMask;
 	}
 	/**
 	 * @return true if this agent is currently infected
 	 */
 	public boolean isInfected()
 	{
-		for(Disease disease : infections)
-		{
-			if(disease.getState() == Disease.State.INFECTED) return true;
-		}
-		return false;
+		return infectedMask != 0;
 	}
 	/**
 	 * @return true if this agent was previously infected, now recovered
 	 */
 	public boolean isRecovered()
 	{
-		return (isInfected() == false && getStrain() != "");
+		return infectedMask == 0 && immunityMask != 0;
 	}
 	/**
 	 * @return returns true if this agent has never been infected
 	 */
 	public boolean isSusceptible()
 	{
-		return getStrain() == "";
+		return (infectedMask | immunityMask) == 0;
+	}
+	
+	/**
+	 * @return SUSCEPTIBLE, INFECTED or RECOVERED, the category this agent is counted in
+	 */
+	public Disease.State getState()
+	{
+		if(infectedMask != 0) return Disease.State.INFECTED;
+		if(immunityMask != 0) return Disease.State.RECOVERED;
+		return Disease.State.SUSCEPTIBLE;
+	}
+	
+	/**
+	 * update the S/I/R tallies of this agent's location (and the world's) after a change
+	 * to this agent's infections
+	 * @param before the agent's state before the change
+	 */
+	private void stateChanged(Disease.State before)
+	{
+		Disease.State after = getState();
+		if(after != before && location != null)
+		{
+			location.changeTally(before, after);
+		}
+	}
+	
+	/**
+	 * change the state of one of this agent's infections, keeping the S/I/R tallies up to date
+	 * @param disease one of this agent's infections
+	 * @param newState the new state
+	 */
+	public void setDiseaseState(Disease disease, Disease.State newState)
+	{
+		Disease.State before = getState();
+		disease.setState(newState);
+		long bit = 1L << disease.getStrainId();
+		infectedMask &= ~bit;
+		immunityMask &= ~bit;
+		if(newState == Disease.State.INFECTED)
+		{
+			infectedMask |= bit;
+		}else if(newState == Disease.State.RECOVERED)
+		{
+			immunityMask |= bit;
+		}
+		stateChanged(before);
 	}
 	
 	/**
@@ -113,22 +199,55 @@ public class Agent {
 	 */
 	public void recieveDisease(String newStrain)
 	{
-		boolean susceptible = true;
-		for(Disease disease : infections)
+		recieveDisease(StrainRegistry.id(newStrain));
+	}
+	
+	/**
+	 * infect the agent with a strain, unless it is already infected with or immune to it
+	 * @param strainId the strain's ID in the StrainRegistry
+	 */
+	public void recieveDisease(int strainId)
+	{
+		long bit = 1L << strainId;
+		if(((infectedMask | immunityMask) & bit) != 0)
 		{
-			if(disease.getStrain() == newStrain){
-				susceptible = false;
-			}
+			return;
 		}
-		if(susceptible){
-			Disease tempDisease = new Disease(newStrain);
-			tempDisease.setState(Disease.State.INFECTED);
-			infections.add(tempDisease);
-			System.out.println(this.getType()+ " " + this.getUID() +" became infectious");
-
+		Disease tempDisease = new Disease(strainId, world);
+		Disease[] grown = new Disease[infections.length + 1];
+		System.arraycopy(infections, 0, grown, 0, infections.length);
+		grown[infections.length] = tempDisease;
+		infections = grown;
+		setDiseaseState(tempDisease, Disease.State.INFECTED);
+		report(EventSink.Kind.INFECTED, tempDisease.getStrain());
+		infectionStarted(tempDisease);
+	}
+	
+	/**
+	 * give back an infection the agent had in another world, without reporting or scheduling it
+	 * @param disease the infection, in the state it was in
+	 */
+	void restoreInfection(Disease disease)
+	{
+		Disease[] grown = Arrays.copyOf(infections, infections.length + 1);
+		grown[infections.length] = disease;
+		infections = grown;
+		long bit = 1L << disease.getStrainId();
+		if(disease.getState() == Disease.State.INFECTED)
+		{
+			infectedMask |= bit;
+		}else if(disease.getState() == Disease.State.RECOVERED)
+		{
+			immunityMask |= bit;
 		}
-			
-
+	}
+	
+	/**
+	 * @return the infections this agent has ever caught, in the order they were caught
+	 */
+	Disease[] getInfections()
+	{
+		return infections;
 	}
 	
 	/**
@@ -137,10 +256,36 @@ public class Agent {
 	 */
 	public void tick(double deltaTime)
 	{
-		for(Disease disease : infections)
-		{
-			disease.tick(deltaTime);
-		}
+	}
+	
+	/**
+	 * called when the agent catches a new disease, so subclasses can schedule its progress
+	 * @param disease the new infection
+	 */
+	void infectionStarted(Disease disease)
+	{
+	}
+	
+	/**
+	 * called the first time the agent enters a location in its world
+	 */
+	void onPlaced()
+	{
+	}
+	
+	/**
+	 * called at the start of a tick this agent was scheduled for with World.schedule,
+	 * or at its end with World.scheduleAfterBites
+	 */
+	void onScheduledEvent()
+	{
+	}
+	
+	/**
+	 * schedule every pending event again, after the world's timeline was cleared
+	 */
+	void scheduleEvents()
+	{
 	}
 	
 /**
@@ -153,22 +298,57 @@ public class Agent {
 	protected void moveTo(int row, int col)
 	{
 		if(this.currCol != col || this.currRow != row){
-			World.getLocation(currRow, currCol).exit(this);
-			Environment temp = World.getLocation(row, col);
+			world.getLocation(currRow, currCol).exit(this);
+			Environment temp = world.getLocation(row, col);
 			temp.enter(this);
 			this.currCol = temp.getColumn();
 			this.currRow = temp.getRow();
 		}
 	}
 	
+	/**
+	 * move to a location chosen by the world's levy flight, along both rows and columns
+	 */
+	protected void levyMove()
+	{
+		LevyFlight flight = world.getLevyFlight();
+		SimRandom rng = World.getStream();
+		int row = flight.jump(currRow, world.getRows(), rng);
+		int col = flight.jump(currCol, world.getColumns(), rng);
+		moveTo(row, col);
+	}
+	
+	/**
+	 * place the agent directly at a location, without going through the enter/exit buffers.
+	 * Used when agent state is copied back from another engine
+	 * @param row the new row
+	 * @param col the new column
+	 */
+	void setPosition(int row, int col)
+	{
+		this.currRow = row;
+		this.currCol = col;
+	}
+	
 	/**
 	 * causes the agent to die (and clear it from the environment)
 	 */
 	protected void die()
 	{
-		World.getLocation(currRow, currCol).exit(this);
-		System.out.println("agent" + getUID() + " " + getType() + " died");
+		dead = true;
+		world.getLocation(currRow, currCol).exit(this);
+		report(EventSink.Kind.DIED, getStrain());
 	}
+	/**
+	 * send an event about this agent to the world's event sink
+	 * @param kind what happened
+	 * @param strain the strain involved, or an empty string
+	 */
+	protected void report(EventSink.Kind kind, String strain)
+	{
+		world.getEventSink().record(kind, world.getTickCount(), UID, type, strain, currRow, currCol);
+	}
+	
 	/**
 	 * @return a string representing the type of agent this is
 	 */
@@ -184,6 +364,26 @@ public class Agent {
 		return UID;
 	}
 	
+	/**
+	 * make a dead agent new again for reuse: a new UID, no infections, and not placed
+	 * anywhere, as if it had just been constructed
+	 * @param row the new row
+	 * @param col the new column
+	 */
+	void reset(int row, int col)
+	{
+		UID = getNextUID();
+		infections = NO_INFECTIONS;
+		infectedMask = 0;
+		immunityMask = 0;
+		currRow = row;
+		currCol = col;
+		slot = -1;
+		location = null;
+		placed = false;
+		dead = false;
+	}
+	
 	/**
 	 * @return the agent's current row in the lattice environment
 	 */
@@ -207,25 +407,17 @@ public class Agent {
 	 */
 	public static int levyFlight(int startingPosition)
 	{
-		int count = 0;
-		int displacement;
-		double randomSample;
-		double test = 0.5;
-		//handle direction
-		if(World.randNum() < 0.5)
-		{
-			displacement = 1;
-		}
-		else
-		{
-			displacement = -1;
-		}
-		randomSample = World.randNum();
-		while(randomSample < test)
-		{
-			count++;
-			test = test /2;
-		}
-		return count*displacement + startingPosition;
+		return levyFlight(startingPosition, World.getStream());
+	}
+	
+	/**
+	 * stochastically jump to a (probably) nearby location, drawing from the given stream
+	 * @param startingPosition the agent's current row or column
+	 * @param rng the random number stream to draw from
+	 * @return the agent's new row or column
+	 */
+	public static int levyFlight(int startingPosition, SimRandom rng)
+	{
+		return LevyFlight.DEFAULT.displacement(rng) + startingPosition;
 	}
 }
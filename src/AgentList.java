@@ -0,0 +1,135 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.Arrays;
+
+/**
+ * an unsynchronized list of agents with O(1) add and remove.
+ * Each agent remembers its index (slot) in the list it was last added to, and removal
+ * moves the last agent into the freed slot, so the order of the list is not preserved.
+ */
+public class AgentList {
+	private Agent[] agents;
+	private int size = 0;
+
+	/**
+	 * creates an empty list
+	 */
+	public AgentList()
+	{
+		agents = new Agent[4];
+	}
+
+	/**
+	 * @param agent the agent to append
+	 */
+	public void add(Agent agent)
+	{
+		if(size == agents.length)
+		{
+			agents = Arrays.copyOf(agents, size * 2);
+		}
+		agent.slot = size;
+		agents[size++] = agent;
+	}
+
+	/**
+	 * remove an agent by swapping the last agent into its slot
+	 * @param agent the agent to remove
+	 * @return true if the agent was in the list
+	 */
+	public boolean remove(Agent agent)
+	{
+		int index = agent.slot;
+		if(index < 0 || index >= size || agents[index] != agent)
+		{
+			//the agent's slot belongs to another list (or it was added twice), so look for it
+			index = indexOf(agent);
+			if(index < 0) return false;
+		}
+		Agent last = agents[--size];
+		agents[index] = last;
+		last.slot = index;
+		agents[size] = null;
+		agent.slot = -1;
+		return true;
+	}
+
+	/**
+	 * @param agent the agent to find
+	 * @return the agent's index, or -1 if it isn't in the list
+	 */
+	private int indexOf(Agent agent)
+	{
+		for(int i = 0; i < size; i++)
+		{
+			if(agents[i] == agent) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index an index between 0 and size()-1
+	 * @return the agent at that index
+	 */
+	public Agent get(int index)
+	{
+		return agents[index];
+	}
+
+	/**
+	 * exchange the agents at two indices
+	 * @param i an index between 0 and size()-1
+	 * @param j an index between 0 and size()-1
+	 */
+	public void swap(int i, int j)
+	{
+		Agent a = agents[i];
+		Agent b = agents[j];
+		agents[i] = b;
+		b.slot = i;
+		agents[j] = a;
+		a.slot = j;
+	}
+
+	/**
+	 * @return the number of agents in the list
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return true if the list has no agents
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * remove every agent from the list
+	 */
+	public void clear()
+	{
+		Arrays.fill(agents, 0, size, null);
+		size = 0;
+	}
+}
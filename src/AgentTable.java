@@ -0,0 +1,130 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.io.IOException;
+
+/**
+ * where an ArrayEngine keeps its agents: one row per human, one per mosquito and one per
+ * location, addressed by index. HeapAgentTable keeps them in arrays on the Java heap,
+ * MappedAgentTable in fixed-width records in a memory-mapped file.
+ * The engine's per-tick grouping of agents by location is kept here too, as an order of
+ * humans and one of mosquitoes.
+ */
+abstract class AgentTable {
+
+	/**
+	 * @return the number of humans
+	 */
+	abstract int getHumanCount();
+
+	/**
+	 * add a susceptible human
+	 * @param uid the human's UID
+	 * @param row the human's current row
+	 * @param col the human's current column
+	 * @param home_row the human's home row
+	 * @param home_col the human's home column
+	 * @return the index of the new human
+	 */
+	abstract int addHuman(long uid, int row, int col, int home_row, int home_col);
+
+	//the fields of a human, see the getters of ArrayEngine
+	abstract long getHumanUID(int h);
+	abstract int getHumanRow(int h);
+	abstract int getHumanColumn(int h);
+	abstract void setHumanPosition(int h, int row, int col);
+	abstract int getHomeRow(int h);
+	abstract int getHomeColumn(int h);
+	abstract byte getHumanState(int h);
+	abstract void setHumanState(int h, byte state);
+	abstract int getHumanStrain(int h);
+	abstract void setHumanStrain(int h, int strain);
+	abstract double getHumanInfectedAt(int h);
+	abstract void setHumanInfectedAt(int h, double time);
+	abstract int getHumanOrder(int i);
+	abstract void setHumanOrder(int i, int h);
+
+	/**
+	 * @return the number of mosquitoes
+	 */
+	abstract int getMosquitoCount();
+
+	/**
+	 * add a susceptible mosquito
+	 * @param uid the mosquito's UID
+	 * @param row the mosquito's row
+	 * @param col the mosquito's column
+	 * @param age the mosquito's age in seconds
+	 * @return the index of the new mosquito
+	 */
+	abstract int addMosquito(long uid, int row, int col, double age);
+
+	/**
+	 * remove a mosquito by moving the last one into its index
+	 * @param m the mosquito's index
+	 */
+	abstract void removeMosquito(int m);
+
+	//the fields of a mosquito, see the getters of ArrayEngine
+	abstract long getMosquitoUID(int m);
+	abstract int getMosquitoRow(int m);
+	abstract int getMosquitoColumn(int m);
+	abstract void setMosquitoPosition(int m, int row, int col);
+	abstract double getMosquitoAge(int m);
+	abstract void setMosquitoAge(int m, double age);
+	abstract byte getMosquitoState(int m);
+	abstract void setMosquitoState(int m, byte state);
+	abstract int getMosquitoStrain(int m);
+	abstract void setMosquitoStrain(int m, int strain);
+	abstract int getMosquitoOrder(int i);
+	abstract void setMosquitoOrder(int i, int m);
+
+	/**
+	 * @param c a location's index, row * columns + column
+	 * @return the age of the location's reserve mosquito in seconds
+	 */
+	abstract double getReserveAge(int c);
+
+	/**
+	 * @param c a location's index, row * columns + column
+	 * @param age the age of the location's reserve mosquito in seconds
+	 */
+	abstract void setReserveAge(int c, double age);
+
+	/**
+	 * called before a tick changes anything
+	 * @throws IOException if the table's storage can't be written
+	 */
+	void beginTick() throws IOException
+	{
+	}
+
+	/**
+	 * make the table's current contents, with the engine's counters, a point the run can
+	 * be restarted from
+	 * @param now seconds since the engine started
+	 * @param infected the number of infected humans and mosquitoes
+	 * @param recovered the number of recovered humans
+	 * @throws IOException if the table's storage can't be written
+	 */
+	void checkpoint(double now, int infected, int recovered) throws IOException
+	{
+		throw new UnsupportedOperationException("agents kept on the heap can't be checkpointed");
+	}
+}
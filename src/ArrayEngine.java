@@ -0,0 +1,597 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * an alternative engine that keeps all agent state in primitive arrays instead of
+ * Human and Mosquito objects, or in fixed-width records in a memory-mapped file for
+ * populations larger than the heap (see create and MappedAgentTable). Agents are grouped
+ * by location with a counting sort at the start of every tick, and the tick loop itself
+ * does not allocate.
+ * Follows the same rules as Environment, Human and Mosquito, except that each agent
+ * carries at most one infection and that within a location humans are processed
+ * before mosquitoes.
+ */
+public class ArrayEngine {
+	public static final byte SUSCEPTIBLE = 0;
+	public static final byte INFECTED = 1;
+	public static final byte RECOVERED = 2;
+	private static final byte DEAD = 3;
+
+	private final int rows;
+	private final int cols;
+	private final double timeStepSeconds;
+	private final long seed;
+	private final SimRandom rng = new SimRandom(0);
+	private LevyFlight flight = LevyFlight.DEFAULT;
+	//seconds since the engine started
+	private double now = 0;
+
+	//the agents and the locations' reserve mosquitoes
+	private final AgentTable agents;
+
+	//agents grouped by location: the agents at location c are the table's order[start[c]] to order[start[c+1]-1]
+	private final int[] humanStart;
+	private final int[] mosquitoStart;
+	private final int[] cursor;
+
+	private int infected = 0;
+	private int recovered = 0;
+
+	/**
+	 * create an engine with an empty lattice, keeping its agents on the Java heap
+	 * @param rows how many rows the lattice has
+	 * @param cols how many columns the lattice has
+	 * @param timeStepSeconds the time between simulation steps
+	 * @param seed the seed the per location random number streams are derived from
+	 */
+	public ArrayEngine(int rows, int cols, double timeStepSeconds, long seed)
+	{
+		this(rows, cols, timeStepSeconds, seed, new HeapAgentTable(rows * cols));
+	}
+
+	/**
+	 * create an engine whose agents are kept in a table
+	 * @param rows how many rows the lattice has
+	 * @param cols how many columns the lattice has
+	 * @param timeStepSeconds the time between simulation steps
+	 * @param seed the seed the per location random number streams are derived from
+	 * @param agents the table
+	 */
+	private ArrayEngine(int rows, int cols, double timeStepSeconds, long seed, AgentTable agents)
+	{
+		this.rows = rows;
+		this.cols = cols;
+		this.timeStepSeconds = timeStepSeconds;
+		this.seed = seed;
+		this.agents = agents;
+		humanStart = new int[rows * cols + 1];
+		mosquitoStart = new int[rows * cols + 1];
+		cursor = new int[rows * cols];
+	}
+
+	/**
+	 * create an engine with an empty lattice that keeps its agents in fixed-width records in
+	 * a memory-mapped file instead of on the Java heap, see MappedAgentTable
+	 * @param file the file, any file already there is replaced
+	 * @param rows how many rows the lattice has
+	 * @param cols how many columns the lattice has
+	 * @param timeStepSeconds the time between simulation steps
+	 * @param seed the seed the per location random number streams are derived from
+	 * @return the new engine
+	 * @throws IOException if the file can't be created, or an engine in this process still has it open
+	 */
+	public static ArrayEngine create(File file, int rows, int cols, double timeStepSeconds, long seed) throws IOException
+	{
+		return new ArrayEngine(rows, cols, timeStepSeconds, seed, MappedAgentTable.create(file, rows, cols, timeStepSeconds, seed));
+	}
+
+	/**
+	 * restart an engine from the last checkpoint of its file. The levy flight isn't part of
+	 * the file, so a run that changed it has to set it again
+	 * @param file a file written by an engine made with create
+	 * @return the engine, as it was at the checkpoint
+	 * @throws IOException if the file can't be read or holds no checkpoint
+	 */
+	public static ArrayEngine open(File file) throws IOException
+	{
+		MappedAgentTable table = MappedAgentTable.open(file);
+		ArrayEngine engine = new ArrayEngine(table.getRows(), table.getColumns(), table.getTimeStep(), table.getSeed(), table);
+		engine.now = table.getTime();
+		engine.infected = table.getInfected();
+		engine.recovered = table.getRecovered();
+		return engine;
+	}
+
+	/**
+	 * make the engine's file a snapshot of the current state, which open can restart from.
+	 * Only call this between ticks
+	 * @throws IOException if the file can't be written
+	 * @throws UnsupportedOperationException if the agents are kept on the heap
+	 */
+	public void checkpoint() throws IOException
+	{
+		agents.checkpoint(now, infected, recovered);
+	}
+
+	/**
+	 * close the engine's file, if it has one. The engine must not be used afterwards
+	 * @throws IOException if the file can't be closed
+	 */
+	public void close() throws IOException
+	{
+		if(agents instanceof MappedAgentTable)
+		{
+			((MappedAgentTable)agents).close();
+		}
+	}
+
+	/**
+	 * create an engine populated the same way the World constructor populates a lattice;
+	 * with the same seed both start from identical populations
+	 * @param rows how many rows the world has
+	 * @param cols how many columns the world has
+	 * @param timeStepSeconds the time between simulation steps
+	 * @param averageHumanDensity a number representing the human density in the environment
+	 * @param seed the seed the per location random number streams are derived from
+	 * @return the new engine
+	 */
+	public static ArrayEngine populate(int rows, int cols, double timeStepSeconds, double averageHumanDensity, long seed)
+	{
+		ArrayEngine engine = new ArrayEngine(rows, cols, timeStepSeconds, seed);
+		engine.populate(averageHumanDensity);
+		return engine;
+	}
+
+	/**
+	 * create an engine that keeps its agents in a file, see create, and populate it the same
+	 * way the World constructor populates a lattice
+	 * @param file the file, any file already there is replaced
+	 * @param rows how many rows the world has
+	 * @param cols how many columns the world has
+	 * @param timeStepSeconds the time between simulation steps
+	 * @param averageHumanDensity a number representing the human density in the environment
+	 * @param seed the seed the per location random number streams are derived from
+	 * @return the new engine
+	 * @throws IOException if the file can't be created
+	 */
+	public static ArrayEngine populate(File file, int rows, int cols, double timeStepSeconds, double averageHumanDensity, long seed) throws IOException
+	{
+		ArrayEngine engine = create(file, rows, cols, timeStepSeconds, seed);
+		engine.populate(averageHumanDensity);
+		return engine;
+	}
+
+	/**
+	 * give every location its residents and its reserve mosquito's age
+	 * @param averageHumanDensity a number representing the human density in the environment
+	 */
+	private void populate(double averageHumanDensity)
+	{
+		PoissonSampler residents = PoissonSampler.forRate(averageHumanDensity);
+		for(int i = 0; i < rows; i++){
+			for(int j = 0; j < cols; j++){
+				rng.setStream(seed, i, j, -1);
+				agents.setReserveAge(i * cols + j, rng.nextDouble() * Mosquito.lifespan_max);
+				for(int numHumans = residents.sample(rng); numHumans > 0; numHumans--)
+				{
+					addHuman(Agent.getNextUID(), i, j, i, j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * add a susceptible human
+	 * @param uid the human's UID
+	 * @param row the human's current row
+	 * @param col the human's current column
+	 * @param home_row the human's home row
+	 * @param home_col the human's home column
+	 * @return the index of the new human
+	 */
+	public int addHuman(long uid, int row, int col, int home_row, int home_col)
+	{
+		return agents.addHuman(uid, row, col, home_row, home_col);
+	}
+
+	/**
+	 * add a susceptible mosquito
+	 * @param uid the mosquito's UID
+	 * @param row the mosquito's row
+	 * @param col the mosquito's column
+	 * @param age the mosquito's age in seconds
+	 * @return the index of the new mosquito
+	 */
+	public int addMosquito(long uid, int row, int col, double age)
+	{
+		return agents.addMosquito(uid, row, col, age);
+	}
+
+	/**
+	 * infect a susceptible human
+	 * @param h the human's index
+	 * @param strain the strain's index
+	 * @param secondsSinceInfection how long ago the infection happened
+	 */
+	public void infectHuman(int h, int strain, double secondsSinceInfection)
+	{
+		if(agents.getHumanState(h) == SUSCEPTIBLE)
+		{
+			agents.setHumanState(h, INFECTED);
+			agents.setHumanStrain(h, strain);
+			agents.setHumanInfectedAt(h, now - secondsSinceInfection);
+			infected++;
+		}
+	}
+
+	/**
+	 * mark a human as recovered from the given strain
+	 * @param h the human's index
+	 * @param strain the strain's index
+	 */
+	public void recoverHuman(int h, int strain)
+	{
+		byte state = agents.getHumanState(h);
+		if(state == INFECTED) infected--;
+		if(state != RECOVERED) recovered++;
+		agents.setHumanState(h, RECOVERED);
+		agents.setHumanStrain(h, strain);
+	}
+
+	/**
+	 * infect a susceptible mosquito
+	 * @param m the mosquito's index
+	 * @param strain the strain's index
+	 */
+	public void infectMosquito(int m, int strain)
+	{
+		if(agents.getMosquitoState(m) == SUSCEPTIBLE)
+		{
+			agents.setMosquitoState(m, INFECTED);
+			agents.setMosquitoStrain(m, strain);
+			infected++;
+		}
+	}
+
+	/**
+	 * @param flight the levy flight used to move humans and mosquitoes
+	 */
+	public void setLevyFlight(LevyFlight flight)
+	{
+		this.flight = flight;
+	}
+
+	/**
+	 * set the age of a location's reserve mosquito
+	 * @param row the location's row
+	 * @param col the location's column
+	 * @param age the age in seconds
+	 */
+	public void setReserveAge(int row, int col, double age)
+	{
+		agents.setReserveAge(row * cols + col, age);
+	}
+
+	/**
+	 * @param row the location's row
+	 * @param col the location's column
+	 * @return the age of the location's reserve mosquito in seconds
+	 */
+	public double getReserveAge(int row, int col)
+	{
+		return agents.getReserveAge(row * cols + col);
+	}
+
+	/**
+	 * advance the simulation
+	 * @param tick the tick number, used to key the random number streams
+	 * @param hourOfDay the model hour of day during this tick
+	 * @throws IllegalStateException if the engine's file can't be written
+	 */
+	public void tick(long tick, int hourOfDay)
+	{
+		//the hot methods read the table into a local so its class is checked once, not on every access
+		AgentTable table = agents;
+		try
+		{
+			table.beginTick();
+		}catch(IOException ex)
+		{
+			throw new IllegalStateException("can't write the agent file", ex);
+		}
+		group();
+		int firstNewMosquito = table.getMosquitoCount();
+		for(int c = 0; c < cursor.length; c++)
+		{
+			int firstHuman = humanStart[c];
+			int endHuman = humanStart[c + 1];
+			int firstMosquito = mosquitoStart[c];
+			int endMosquito = mosquitoStart[c + 1];
+			if(firstHuman == endHuman && firstMosquito == endMosquito) continue;
+			int row = c / cols;
+			int col = c - row * cols;
+			rng.setStream(seed, row, col, tick);
+			for(int idx = firstHuman; idx < endHuman; idx++)
+			{
+				tickHuman(table.getHumanOrder(idx), c, hourOfDay);
+			}
+			for(int idx = firstMosquito; idx < endMosquito; idx++)
+			{
+				tickMosquito(table.getMosquitoOrder(idx), firstHuman, endHuman);
+			}
+		}
+		removeDead(firstNewMosquito);
+		now += timeStepSeconds;
+	}
+
+	/**
+	 * counting sort of all agents by location
+	 */
+	private void group()
+	{
+		AgentTable table = agents;
+		int humanCount = table.getHumanCount();
+		int mosquitoCount = table.getMosquitoCount();
+		Arrays.fill(humanStart, 0);
+		Arrays.fill(mosquitoStart, 0);
+		for(int h = 0; h < humanCount; h++)
+		{
+			humanStart[table.getHumanRow(h) * cols + table.getHumanColumn(h) + 1]++;
+		}
+		for(int m = 0; m < mosquitoCount; m++)
+		{
+			mosquitoStart[table.getMosquitoRow(m) * cols + table.getMosquitoColumn(m) + 1]++;
+		}
+		for(int c = 0; c < cursor.length; c++)
+		{
+			humanStart[c + 1] += humanStart[c];
+			mosquitoStart[c + 1] += mosquitoStart[c];
+		}
+		System.arraycopy(humanStart, 0, cursor, 0, cursor.length);
+		for(int h = 0; h < humanCount; h++)
+		{
+			table.setHumanOrder(cursor[table.getHumanRow(h) * cols + table.getHumanColumn(h)]++, h);
+		}
+		System.arraycopy(mosquitoStart, 0, cursor, 0, cursor.length);
+		for(int m = 0; m < mosquitoCount; m++)
+		{
+			table.setMosquitoOrder(cursor[table.getMosquitoRow(m) * cols + table.getMosquitoColumn(m)]++, m);
+		}
+	}
+
+	/**
+	 * the reserve mosquito bite from Environment.tick followed by Human.tick
+	 * @param h the human's index
+	 * @param c the human's location
+	 * @param hourOfDay the model hour of day
+	 */
+	private void tickHuman(int h, int c, int hourOfDay)
+	{
+		AgentTable table = agents;
+		int humanRow = table.getHumanRow(h);
+		int humanCol = table.getHumanColumn(h);
+		if(rng.nextDouble() < Mosquito.bite_rate && table.getHumanState(h) == INFECTED)
+		{
+			//the reserve mosquito caught the disease, it becomes a real mosquito and is replaced
+			int m = addMosquito(Agent.getNextUID(), humanRow, humanCol, table.getReserveAge(c));
+			infectMosquito(m, table.getHumanStrain(h));
+			table.setReserveAge(c, rng.nextDouble() * Mosquito.lifespan_max);
+		}
+		if(table.getHumanState(h) == INFECTED && now + timeStepSeconds - table.getHumanInfectedAt(h) > Human.infectious_period)
+		{
+			table.setHumanState(h, RECOVERED);
+			infected--;
+			recovered++;
+		}
+		//at night stay home, otherwise half the time return home and half the time levy flight
+		if(hourOfDay < 8 || rng.nextDouble() < 0.5)
+		{
+			table.setHumanPosition(h, table.getHomeRow(h), table.getHomeColumn(h));
+		}else{
+			int row = flight.jump(humanRow, rows, rng);
+			int col = flight.jump(humanCol, cols, rng);
+			table.setHumanPosition(h, row, col);
+		}
+	}
+
+	/**
+	 * Mosquito.tick
+	 * @param m the mosquito's index
+	 * @param firstHuman start of the humans at this mosquito's location in the order of humans
+	 * @param endHuman end of the humans at this mosquito's location in the order of humans
+	 */
+	private void tickMosquito(int m, int firstHuman, int endHuman)
+	{
+		AgentTable table = agents;
+		double age = table.getMosquitoAge(m) + timeStepSeconds;
+		table.setMosquitoAge(m, age);
+		if(age > Mosquito.lifespan_max)
+		{
+			kill(m);
+		}else if(endHuman > firstHuman){
+			if(rng.nextDouble() < Mosquito.bite_rate)
+			{
+				int victim = table.getHumanOrder(firstHuman + (int)(rng.nextDouble() * (endHuman - firstHuman)));
+				if(table.getMosquitoState(m) == INFECTED)
+				{
+					infectHuman(victim, table.getMosquitoStrain(m), 0);
+				}
+				if(table.getHumanState(victim) == INFECTED)
+				{
+					infectMosquito(m, table.getHumanStrain(victim));
+				}
+				if(rng.nextDouble() > Mosquito.encounter_survival_rate)
+				{
+					kill(m);
+				}
+			}
+		}else{
+			int row = flight.jump(table.getMosquitoRow(m), rows, rng);
+			int col = flight.jump(table.getMosquitoColumn(m), cols, rng);
+			table.setMosquitoPosition(m, row, col);
+		}
+	}
+
+	/**
+	 * @param m the index of the mosquito that died
+	 */
+	private void kill(int m)
+	{
+		if(agents.getMosquitoState(m) == INFECTED) infected--;
+		agents.setMosquitoState(m, DEAD);
+	}
+
+	/**
+	 * compact the mosquitoes after a tick, moving the last mosquito into each dead one's index
+	 * @param end mosquitoes from this index on were born during the tick and can't be dead
+	 */
+	private void removeDead(int end)
+	{
+		for(int m = end - 1; m >= 0; m--)
+		{
+			if(agents.getMosquitoState(m) == DEAD)
+			{
+				agents.removeMosquito(m);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of infected humans and mosquitoes
+	 */
+	public int countInfections()
+	{
+		return infected;
+	}
+
+	/**
+	 * @return the number of recovered humans
+	 */
+	public int countRecovered()
+	{
+		return recovered;
+	}
+
+	/**
+	 * @return the number of humans and living mosquitoes that have never been infected
+	 */
+	public int countSusceptible()
+	{
+		return agents.getHumanCount() + agents.getMosquitoCount() - infected - recovered;
+	}
+
+	/**
+	 * @return the number of humans
+	 */
+	public int getHumanCount()
+	{
+		return agents.getHumanCount();
+	}
+
+	/**
+	 * @return the number of living mosquitoes
+	 */
+	public int getMosquitoCount()
+	{
+		return agents.getMosquitoCount();
+	}
+
+	/**
+	 * @return seconds since the engine started
+	 */
+	public double getTime()
+	{
+		return now;
+	}
+
+	/**
+	 * @param h a human's index
+	 * @return the human's UID
+	 */
+	public long getHumanUID(int h) { return agents.getHumanUID(h); }
+	/**
+	 * @param h a human's index
+	 * @return the human's row
+	 */
+	public int getHumanRow(int h) { return agents.getHumanRow(h); }
+	/**
+	 * @param h a human's index
+	 * @return the human's column
+	 */
+	public int getHumanColumn(int h) { return agents.getHumanColumn(h); }
+	/**
+	 * @param h a human's index
+	 * @return the human's home row
+	 */
+	public int getHumanHomeRow(int h) { return agents.getHomeRow(h); }
+	/**
+	 * @param h a human's index
+	 * @return the human's home column
+	 */
+	public int getHumanHomeColumn(int h) { return agents.getHomeColumn(h); }
+	/**
+	 * @param h a human's index
+	 * @return the human's state: SUSCEPTIBLE, INFECTED or RECOVERED
+	 */
+	public byte getHumanState(int h) { return agents.getHumanState(h); }
+	/**
+	 * @param h a human's index
+	 * @return the index of the strain the human had, or -1
+	 */
+	public int getHumanStrain(int h) { return agents.getHumanStrain(h); }
+	/**
+	 * @param h a human's index
+	 * @return seconds since the human was infected
+	 */
+	public double getHumanTimeSinceInfection(int h) { return now - agents.getHumanInfectedAt(h); }
+	/**
+	 * @param m a mosquito's index
+	 * @return the mosquito's UID
+	 */
+	public long getMosquitoUID(int m) { return agents.getMosquitoUID(m); }
+	/**
+	 * @param m a mosquito's index
+	 * @return the mosquito's row
+	 */
+	public int getMosquitoRow(int m) { return agents.getMosquitoRow(m); }
+	/**
+	 * @param m a mosquito's index
+	 * @return the mosquito's column
+	 */
+	public int getMosquitoColumn(int m) { return agents.getMosquitoColumn(m); }
+	/**
+	 * @param m a mosquito's index
+	 * @return the mosquito's age in seconds
+	 */
+	public double getMosquitoAge(int m) { return agents.getMosquitoAge(m); }
+	/**
+	 * @param m a mosquito's index
+	 * @return the mosquito's state: SUSCEPTIBLE or INFECTED
+	 */
+	public byte getMosquitoState(int m) { return agents.getMosquitoState(m); }
+	/**
+	 * @param m a mosquito's index
+	 * @return the index of the strain the mosquito carries, or -1
+	 */
+	public int getMosquitoStrain(int m) { return agents.getMosquitoStrain(m); }
+}
@@ -0,0 +1,201 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.HashMap;
+
+/**
+ * lets a World run on an ArrayEngine: copies the agents out of the lattice into the
+ * engine, and later copies the engine's state back into the Human, Mosquito and
+ * Environment objects so the rest of the World/Environment API sees the result.
+ * While the engine is running the Environment objects are not updated.
+ */
+public class ArrayEngineAdapter {
+	private final World world;
+	private final ArrayEngine engine;
+	private final HashMap<Long, Human> humans = new HashMap<Long, Human>();
+	private final HashMap<Long, Mosquito> mosquitoes = new HashMap<Long, Mosquito>();
+
+	/**
+	 * copy every agent in the current lattice into a new engine,
+	 * pending entrances and exits are processed first
+	 * @param world the world whose lattice is copied
+	 * @param timeStepSeconds the time between simulation steps
+	 */
+	public ArrayEngineAdapter(World world, double timeStepSeconds)
+	{
+		this.world = world;
+		int rows = world.getRows();
+		int cols = world.getColumns();
+		engine = new ArrayEngine(rows, cols, timeStepSeconds, world.getSeed());
+		engine.setLevyFlight(world.getLevyFlight());
+		for(int i = 0; i < rows; i++){
+			for(int j = 0; j < cols; j++){
+				Environment location = world.findLocation(i, j);
+				if(location == null)
+				{
+					engine.setReserveAge(i, j, world.initialReserveAge(i, j));
+					continue;
+				}
+				location.doExits();
+				location.doEntrances();
+				engine.setReserveAge(i, j, location.getReserveAge());
+				for(Agent agent : location.getAll(Human.type))
+				{
+					Human human = (Human)agent;
+					int h = engine.addHuman(human.getUID(), i, j, human.homeRow, human.homeCol);
+					humans.put(human.getUID(), human);
+					if(human.isInfected())
+					{
+						engine.infectHuman(h, human.getStrainId(), infectedFor(human));
+					}else if(human.isRecovered())
+					{
+						engine.recoverHuman(h, human.getStrainId());
+					}
+				}
+				for(Agent agent : location.getAll(Mosquito.type))
+				{
+					Mosquito mosquito = (Mosquito)agent;
+					int m = engine.addMosquito(mosquito.getUID(), i, j, mosquito.getAge());
+					mosquitoes.put(mosquito.getUID(), mosquito);
+					if(mosquito.isInfected())
+					{
+						engine.infectMosquito(m, mosquito.getStrainId());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the engine holding the agents
+	 */
+	public ArrayEngine getEngine()
+	{
+		return engine;
+	}
+
+	/**
+	 * copy the engine's agents back into the lattice. Mosquitoes that were born in the
+	 * engine become new Mosquito objects, mosquitoes that died in it are dropped
+	 */
+	public void store()
+	{
+		int rows = world.getRows();
+		int cols = world.getColumns();
+		for(int i = 0; i < rows; i++){
+			for(int j = 0; j < cols; j++){
+				Environment location = world.findLocation(i, j);
+				double reserveAge = engine.getReserveAge(i, j);
+				if(location == null && reserveAge != world.initialReserveAge(i, j))
+				{
+					location = world.getLocation(i, j);
+				}
+				if(location != null)
+				{
+					location.clearInhabitants();
+					location.setReserveAge(reserveAge);
+				}
+			}
+		}
+		for(int h = 0; h < engine.getHumanCount(); h++)
+		{
+			Human human = humans.get(engine.getHumanUID(h));
+			if(human == null)
+			{
+				human = new Human(engine.getHumanHomeRow(h), engine.getHumanHomeColumn(h));
+			}
+			human.setPosition(engine.getHumanRow(h), engine.getHumanColumn(h));
+			if(engine.getHumanState(h) != ArrayEngine.SUSCEPTIBLE)
+			{
+				Disease.State state = engine.getHumanState(h) == ArrayEngine.RECOVERED ? Disease.State.RECOVERED : Disease.State.INFECTED;
+				Disease disease = restore(human, engine.getHumanStrain(h), state,
+						world.getElapsedSeconds() - engine.getHumanTimeSinceInfection(h));
+				if(state == Disease.State.INFECTED)
+				{
+					disease.tick(engine.getHumanTimeSinceInfection(h) - disease.getTimeSinceInfection());
+				}
+			}
+			world.getLocation(human.getRow(), human.getColumn()).enter(human);
+		}
+		for(int m = 0; m < engine.getMosquitoCount(); m++)
+		{
+			Mosquito mosquito = mosquitoes.get(engine.getMosquitoUID(m));
+			if(mosquito == null)
+			{
+				mosquito = new Mosquito(engine.getMosquitoRow(m), engine.getMosquitoColumn(m));
+			}
+			mosquito.setPosition(engine.getMosquitoRow(m), engine.getMosquitoColumn(m));
+			mosquito.setAge(engine.getMosquitoAge(m));
+			if(engine.getMosquitoState(m) == ArrayEngine.INFECTED)
+			{
+				//the engine doesn't keep when a mosquito was infected
+				restore(mosquito, engine.getMosquitoStrain(m), Disease.State.INFECTED, world.getElapsedSeconds());
+			}
+			world.getLocation(mosquito.getRow(), mosquito.getColumn()).enter(mosquito);
+		}
+		for(int i = 0; i < rows; i++){
+			for(int j = 0; j < cols; j++){
+				Environment location = world.findLocation(i, j);
+				if(location != null) location.doEntrances();
+			}
+		}
+		world.recountTallies();
+	}
+
+	/**
+	 * @param agent an infected agent
+	 * @return how long ago the agent's current infection started
+	 */
+	private static double infectedFor(Agent agent)
+	{
+		for(Disease disease : agent.infections)
+		{
+			if(disease.getState() == Disease.State.INFECTED) return disease.getTimeSinceInfection();
+		}
+		return 0;
+	}
+
+	/**
+	 * bring an agent's record of a strain up to the state the engine left it in. The
+	 * infection already happened inside the engine, so nothing is reported or scheduled;
+	 * World.useArrayEngine schedules the pending recoveries once every agent is back
+	 * @param agent the agent
+	 * @param strain the strain's ID in the StrainRegistry, which the engine uses as its strain index
+	 * @param state INFECTED or RECOVERED
+	 * @param infectedAt World.getElapsedSeconds() at the time of infection, for a new record
+	 * @return the agent's record for the strain
+	 */
+	private static Disease restore(Agent agent, int strain, Disease.State state, double infectedAt)
+	{
+		for(Disease disease : agent.infections)
+		{
+			if(disease.getStrainId() == strain)
+			{
+				if(disease.getState() != state)
+				{
+					agent.setDiseaseState(disease, state);
+				}
+				return disease;
+			}
+		}
+		Disease disease = new Disease(strain, state, infectedAt, agent.world);
+		agent.restoreInfection(disease);
+		return disease;
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * a headless entry point that runs the simulation as fast as possible
+ * without any GUI, then reports throughput statistics.
+ * usage: java BatchRunner [-rows n] [-cols n] [-step seconds] [-humans density]
+ *  [-mosquitoes density] [-mosquitoModel agents|compartments] [-bites individual|batched] [-start epochSeconds] [-seed n] [-infected n] [-maxTicks n]
+ *  [-threads n] [-speedup maxThreads] [-levy exponent] [-border clamp|reflect|wrap] [-events none|console|file.csv]
+ * the model clock starts at -start seconds since 1970 UTC, by default SimClock.DEFAULT_START,
+ * with -mosquitoModel compartments mosquitoes are per location counts instead of agents,
+ * with -bites batched each location samples how many humans are bitten instead of drawing for every human,
+ * without -levy humans and mosquitoes use the original geometric levy flight,
+ * without -events agent events are dropped
+ * with -speedup the same run is repeated with 1, 2, 4, ... maxThreads threads and a speedup table is printed
+ */
+public class BatchRunner {
+
+	int rows = 50;
+	int cols = 50;
+	double timeStepSeconds = 3600.0;
+	double humanDensity = 2;
+	double mosquitoDensity = 0.5;
+	boolean mosquitoCompartments = false;
+	boolean batchedBites = false;
+	long startTime = SimClock.DEFAULT_START;
+	long seed = 55;
+	int initialInfections = 1;
+	long maxTicks = Long.MAX_VALUE;
+	int threads = 1;
+	int speedupThreads = 0;
+	double levyExponent = 0;
+	LevyFlight.Border border = LevyFlight.Border.CLAMP;
+	String events = "none";
+
+	//results of the last run
+	long ticks;
+	long agentUpdates;
+	long elapsedNanos;
+	int infections;
+	int recovered;
+	long mosquitoes;
+	long poolRequests;
+	double poolHitRate;
+
+	/**
+	 * parse the command line arguments into this runner's settings
+	 * @param args pairs of "-option value"
+	 * @throws IllegalArgumentException if an option is unknown or has no value
+	 */
+	public void parse(String[] args)
+	{
+		for(int i = 0; i < args.length; i += 2)
+		{
+			if(i + 1 >= args.length)
+			{
+				throw new IllegalArgumentException("missing value for " + args[i]);
+			}
+			String option = args[i];
+			String value = args[i + 1];
+			if(option.equals("-rows")) rows = Integer.parseInt(value);
+			else if(option.equals("-cols")) cols = Integer.parseInt(value);
+			else if(option.equals("-step")) timeStepSeconds = Double.parseDouble(value);
+			else if(option.equals("-humans")) humanDensity = Double.parseDouble(value);
+			else if(option.equals("-mosquitoes")) mosquitoDensity = Double.parseDouble(value);
+			else if(option.equals("-mosquitoModel")) mosquitoCompartments = parseMosquitoModel(value);
+			else if(option.equals("-bites")) batchedBites = parseBites(value);
+			else if(option.equals("-start")) startTime = Long.parseLong(value);
+			else if(option.equals("-seed")) seed = Long.parseLong(value);
+			else if(option.equals("-infected")) initialInfections = Integer.parseInt(value);
+			else if(option.equals("-maxTicks")) maxTicks = Long.parseLong(value);
+			else if(option.equals("-threads")) threads = Integer.parseInt(value);
+			else if(option.equals("-speedup")) speedupThreads = Integer.parseInt(value);
+			else if(option.equals("-levy")) levyExponent = Double.parseDouble(value);
+			else if(option.equals("-border")) border = LevyFlight.Border.valueOf(value.toUpperCase());
+			else if(option.equals("-events")) events = value;
+			else throw new IllegalArgumentException("unknown option " + option);
+		}
+	}
+
+	/**
+	 * @param value "agents" or "compartments"
+	 * @return true for mosquito compartments, see World.useMosquitoCompartments
+	 * @throws IllegalArgumentException for any other value
+	 */
+	static boolean parseMosquitoModel(String value)
+	{
+		if(value.equals("agents")) return false;
+		if(value.equals("compartments")) return true;
+		throw new IllegalArgumentException("unknown mosquito model " + value);
+	}
+
+	/**
+	 * @param value "individual" or "batched"
+	 * @return true for batched bites, see World.useBatchedBites
+	 * @throws IllegalArgumentException for any other value
+	 */
+	static boolean parseBites(String value)
+	{
+		if(value.equals("individual")) return false;
+		if(value.equals("batched")) return true;
+		throw new IllegalArgumentException("unknown bite sampling " + value);
+	}
+
+	/**
+	 * build a world with the current settings and tick it until there are no infections
+	 * left or the tick limit is reached
+	 * @throws IOException if the event log can't be opened
+	 */
+	public void run() throws IOException
+	{
+		EventSink sink;
+		if(events.equals("none"))
+		{
+			sink = new NullEventSink();
+		}else if(events.equals("console"))
+		{
+			sink = new ConsoleEventSink();
+		}else{
+			sink = new RingBufferEventSink(new File(events), 1 << 16);
+		}
+		World theWorld = new World(rows, cols, timeStepSeconds, mosquitoDensity, humanDensity, seed);
+		theWorld.setEventSink(sink);
+		theWorld.setStartTime(startTime);
+		theWorld.useMosquitoCompartments(mosquitoCompartments);
+		theWorld.useBatchedBites(batchedBites);
+		theWorld.setParallelism(threads);
+		if(levyExponent > 0)
+		{
+			theWorld.setLevyFlight(LevyFlight.powerLaw(levyExponent, Math.max(rows, cols), border));
+		}else{
+			theWorld.setLevyFlight(LevyFlight.geometric(border));
+		}
+		for(int i = 0; i < initialInfections; i++)
+		{
+			theWorld.introduceInfection("ACGT");
+		}
+
+		ticks = 0;
+		long start = System.nanoTime();
+		//the first tick places the initial infections, so always do at least one
+		do
+		{
+			theWorld.tick();
+			ticks++;
+		}while(ticks < maxTicks && theWorld.countInfections() > 0);
+		elapsedNanos = System.nanoTime() - start;
+
+		agentUpdates = theWorld.getAgentUpdates();
+		infections = theWorld.countInfections();
+		recovered = theWorld.countRecovered();
+		mosquitoes = theWorld.countCompartmentMosquitoes(Disease.State.SUSCEPTIBLE)
+				+ theWorld.countCompartmentMosquitoes(Disease.State.INFECTED);
+		poolRequests = theWorld.getMosquitoPool().getRequests();
+		poolHitRate = theWorld.getMosquitoPool().getHitRate();
+		theWorld.setParallelism(1);
+		sink.close();
+	}
+	
+	/**
+	 * repeat the run with 1, 2, 4, ... up to maxThreads threads
+	 * @param maxThreads the largest thread count to measure
+	 * @return a table of ticks/sec and speedup relative to the single threaded run
+	 * @throws IOException if the event log can't be opened
+	 */
+	public String speedupReport(int maxThreads) throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("threads\tticks/sec\tagent-updates/sec\tspeedup\n");
+		double baseline = 0;
+		for(int t = 1; ; t = Math.min(t * 2, maxThreads))
+		{
+			threads = t;
+			run();
+			double seconds = elapsedNanos / 1e9;
+			double ticksPerSecond = ticks / seconds;
+			if(t == 1)
+			{
+				baseline = ticksPerSecond;
+			}
+			sb.append(t).append('\t');
+			sb.append(String.format("%.1f", ticksPerSecond)).append('\t');
+			sb.append(String.format("%.0f", agentUpdates / seconds)).append('\t');
+			sb.append(String.format("%.2f", ticksPerSecond / baseline)).append('\n');
+			if(t == maxThreads) break;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return a human readable summary of the last run
+	 */
+	public String report()
+	{
+		double seconds = elapsedNanos / 1e9;
+		StringBuilder sb = new StringBuilder();
+		sb.append("lattice: ").append(rows).append("x").append(cols);
+		sb.append(" seed: ").append(seed);
+		sb.append(" threads: ").append(threads).append('\n');
+		sb.append("ticks: ").append(ticks);
+		sb.append(" elapsed: ").append(String.format("%.3f", seconds)).append(" s\n");
+		sb.append("ticks/sec: ").append(String.format("%.1f", ticks / seconds)).append('\n');
+		sb.append("agent updates: ").append(agentUpdates);
+		sb.append(" agent-updates/sec: ").append(String.format("%.0f", agentUpdates / seconds)).append('\n');
+		sb.append("infected: ").append(infections);
+		sb.append(" recovered: ").append(recovered);
+		if(mosquitoCompartments)
+		{
+			sb.append(" mosquitoes: ").append(mosquitoes);
+		}
+		sb.append('\n').append("mosquito agents made: ").append(poolRequests);
+		sb.append(" reissued from the pool: ").append(String.format("%.1f", 100 * poolHitRate)).append('%');
+		return sb.toString();
+	}
+
+	/**
+	 * run one headless simulation and print the throughput report
+	 * @param args see the class description
+	 * @throws IOException if the event log can't be opened
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		BatchRunner runner = new BatchRunner();
+		try
+		{
+			runner.parse(args);
+		}catch(IllegalArgumentException ex)
+		{
+			System.err.println(ex.getMessage());
+			System.err.println("usage: java BatchRunner [-rows n] [-cols n] [-step seconds] [-humans density]"
+					+ " [-mosquitoes density] [-mosquitoModel agents|compartments] [-bites individual|batched] [-start epochSeconds] [-seed n] [-infected n]"
+					+ " [-maxTicks n] [-threads n] [-speedup maxThreads]"
+					+ " [-levy exponent] [-border clamp|reflect|wrap] [-events none|console|file.csv]");
+			System.exit(1);
+		}
+		if(runner.speedupThreads > 0)
+		{
+			System.out.println(runner.speedupReport(runner.speedupThreads));
+		}else{
+			runner.run();
+			System.out.println(runner.report());
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+/**
+ * samples binomially distributed counts: how many of n independent trials succeed with
+ * probability p each. Small expected counts use inversion, which takes about n*p steps;
+ * larger ones use Hormann's transformed rejection method (BTRS), which takes a constant
+ * expected number of draws however large n is.
+ * see W. Hormann, "The generation of binomial random variates", 1993
+ */
+public class BinomialSampler {
+	//expected counts at or above this use BTRS
+	private static final double INVERSION_LIMIT = 10;
+
+	private BinomialSampler()
+	{
+	}
+
+	/**
+	 * @param n the number of trials, must not be negative
+	 * @param p the probability of success of each trial, between 0 and 1
+	 * @param rng the random number stream to draw from
+	 * @return the number of successes
+	 */
+	public static int sample(int n, double p, SimRandom rng)
+	{
+		if(n < 0 || !(p >= 0 && p <= 1))
+		{
+			throw new IllegalArgumentException("bad binomial parameters n=" + n + " p=" + p);
+		}
+		if(n == 0 || p == 0) return 0;
+		if(p == 1) return n;
+		//sample the failures instead when they are the rarer outcome
+		if(p > 0.5) return n - sample(n, 1 - p, rng);
+		if(n * p < INVERSION_LIMIT) return sampleInversion(n, p, Math.exp(n * Math.log1p(-p)), rng);
+		return sampleRejection(n, p, rng);
+	}
+
+	/**
+	 * the same as sample(n, p, rng) for a small expected count, for callers that sample the
+	 * same p over and over and keep the probabilities of no successes in a table
+	 * @param n the number of trials, must not be negative
+	 * @param p the probability of success of each trial, at most 0.5
+	 * @param none the probability of no successes, (1-p)^n
+	 * @param rng the random number stream to draw from
+	 * @return the number of successes
+	 */
+	public static int sample(int n, double p, double none, SimRandom rng)
+	{
+		if(n == 0 || p == 0) return 0;
+		return sampleInversion(n, p, none, rng);
+	}
+
+	/**
+	 * walk up the distribution from 0 until the cumulative probability passes a uniform draw
+	 * @param none the probability of 0
+	 */
+	private static int sampleInversion(int n, double p, double none, SimRandom rng)
+	{
+		double u = rng.nextDouble();
+		if(u <= none)
+		{
+			return 0;
+		}
+		double q = 1 - p;
+		double s = p / q;
+		double a = (n + 1) * s;
+		double r = none;
+		int k = 0;
+		while(u > r)
+		{
+			u -= r;
+			k++;
+			if(k > n)
+			{
+				//rounding left u above the total probability, start again
+				return sampleInversion(n, p, none, rng);
+			}
+			r *= a / k - s;
+		}
+		return k;
+	}
+
+	/**
+	 * BTRS, for n*p of at least INVERSION_LIMIT and p at most 0.5
+	 */
+	private static int sampleRejection(int n, double p, SimRandom rng)
+	{
+		double q = 1 - p;
+		double spq = Math.sqrt(n * p * q);
+		double b = 1.15 + 2.53 * spq;
+		double a = -0.0873 + 0.0248 * b + 0.01 * p;
+		double c = n * p + 0.5;
+		double vr = 0.92 - 4.2 / b;
+		double alpha = (2.83 + 5.1 / b) * spq;
+		double logOdds = Math.log(p / q);
+		int m = (int)Math.floor((n + 1) * p);
+		double logMode = -PoissonSampler.logFactorial(m) - PoissonSampler.logFactorial(n - m) + m * logOdds;
+		while(true)
+		{
+			double u = rng.nextDouble() - 0.5;
+			double v = rng.nextDouble();
+			double us = 0.5 - Math.abs(u);
+			int k = (int)Math.floor((2 * a / us + b) * u + c);
+			if(k < 0 || k > n)
+			{
+				continue;
+			}
+			if(us >= 0.07 && v <= vr)
+			{
+				return k;
+			}
+			//accept if v is under the probability of k relative to the mode
+			v = Math.log(v * alpha / (a / (us * us) + b));
+			double logRatio = -PoissonSampler.logFactorial(k) - PoissonSampler.logFactorial(n - k) + k * logOdds - logMode;
+			if(v <= logRatio)
+			{
+				return k;
+			}
+		}
+	}
+
+	/**
+	 * @param n the number of trials
+	 * @param p the probability of success of each trial
+	 * @param k the number of successes
+	 * @return the probability of exactly k successes
+	 */
+	public static double probability(int n, double p, int k)
+	{
+		if(k < 0 || k > n) return 0;
+		if(p == 0) return k == 0 ? 1 : 0;
+		if(p == 1) return k == n ? 1 : 0;
+		return Math.exp(PoissonSampler.logFactorial(n) - PoissonSampler.logFactorial(k) - PoissonSampler.logFactorial(n - k)
+				+ k * Math.log(p) + (n - k) * Math.log1p(-p));
+	}
+}
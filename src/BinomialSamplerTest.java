@@ -0,0 +1,87 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class tests the distribution produced by BinomialSampler
+ */
+public class BinomialSamplerTest {
+
+	/**
+	 * Draws many samples and checks the sample mean and variance against n*p and n*p*(1-p).
+	 */
+	private static void checkMoments(int n, double p){
+		SimRandom rng = new SimRandom(55);
+		int draws = 200000;
+		double sum = 0;
+		double sumSquares = 0;
+		for(int i=0; i<draws; i++){
+			int k = BinomialSampler.sample(n, p, rng);
+			assertTrue(k >= 0 && k <= n);
+			sum += k;
+			sumSquares += (double)k * k;
+		}
+		double mean = sum / draws;
+		double variance = sumSquares / draws - mean * mean;
+		double expectedVariance = n * p * (1 - p);
+		//allow 5 standard errors
+		assertEquals(n * p, mean, 5 * Math.sqrt(expectedVariance / draws));
+		assertEquals(expectedVariance, variance, Math.max(0.02, 0.03 * expectedVariance));
+	}
+	
+	@Test
+	public void testMomentsInversion(){
+		checkMoments(10, 0.3);
+		checkMoments(500, 0.01);
+		checkMoments(1000000, 0.000009);
+	}
+	
+	@Test
+	public void testMomentsRejection(){
+		checkMoments(1000, 0.01);
+		checkMoments(100000, 0.01);
+		checkMoments(200, 0.9);
+		checkMoments(2000000000, 0.5);
+	}
+	
+	/**
+	 * Compares the frequency of each count with its probability, on both sides of the
+	 * switch from inversion to rejection.
+	 */
+	@Test
+	public void testDistribution(){
+		int[] ns = {30, 4000};
+		double[] ps = {0.25, 0.01};
+		for(int c=0; c<ns.length; c++){
+			int n = ns[c];
+			double p = ps[c];
+			SimRandom rng = new SimRandom(7);
+			int draws = 400000;
+			int[] counts = new int[n + 1];
+			for(int i=0; i<draws; i++){
+				counts[BinomialSampler.sample(n, p, rng)]++;
+			}
+			double total = 0;
+			for(int k=0; k<=n; k++){
+				double expected = BinomialSampler.probability(n, p, k) * draws;
+				total += expected;
+				if(expected > 100){
+					assertEquals(expected, counts[k], 5 * Math.sqrt(expected));
+				}
+			}
+			assertEquals(draws, total, 1e-6 * draws);
+		}
+	}
+	
+	@Test
+	public void testEdgeCases(){
+		SimRandom rng = new SimRandom(1);
+		assertEquals(0, BinomialSampler.sample(0, 0.5, rng));
+		assertEquals(0, BinomialSampler.sample(100, 0, rng));
+		assertEquals(100, BinomialSampler.sample(100, 1, rng));
+		try{
+			BinomialSampler.sample(-1, 0.5, rng);
+			fail();
+		}catch(IllegalArgumentException expected){
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a fixed size set of lattice cell indices (row * columns + column) kept as a bitset.
+ * add and remove are atomic, so locations in different bands can update it at once.
+ * World uses it to remember which locations hold or are about to receive agents
+ */
+public class CellSet {
+	private final AtomicLongArray words;
+
+	/**
+	 * @param size the number of cells
+	 */
+	public CellSet(int size)
+	{
+		words = new AtomicLongArray((size + 63) >>> 6);
+	}
+
+	/**
+	 * @param cell a cell index
+	 * @return true if the cell was not in the set before
+	 */
+	public boolean add(int cell)
+	{
+		int w = cell >>> 6;
+		long bit = 1L << cell;
+		long old = words.get(w);
+		//most adds are to cells that are already in the set, those don't need a write
+		while((old & bit) == 0)
+		{
+			if(words.compareAndSet(w, old, old | bit))
+			{
+				return true;
+			}
+			old = words.get(w);
+		}
+		return false;
+	}
+
+	/**
+	 * @param cell a cell index
+	 * @return true if the cell was in the set before
+	 */
+	public boolean remove(int cell)
+	{
+		int w = cell >>> 6;
+		long bit = 1L << cell;
+		long old = words.get(w);
+		while((old & bit) != 0)
+		{
+			if(words.compareAndSet(w, old, old & ~bit))
+			{
+				return true;
+			}
+			old = words.get(w);
+		}
+		return false;
+	}
+
+	/**
+	 * @param cell a cell index
+	 * @return true if the cell is in the set
+	 */
+	public boolean contains(int cell)
+	{
+		return (words.get(cell >>> 6) & (1L << cell)) != 0;
+	}
+
+	/**
+	 * @return the number of cells in the set
+	 */
+	public int count()
+	{
+		int count = 0;
+		for(int w = 0; w < words.length(); w++)
+		{
+			count += Long.bitCount(words.get(w));
+		}
+		return count;
+	}
+
+	/**
+	 * copy the set's current contents
+	 * @param copy where to copy to, or null
+	 * @return copy, or a new array if copy was null or too short
+	 */
+	public long[] snapshot(long[] copy)
+	{
+		if(copy == null || copy.length < words.length())
+		{
+			copy = new long[words.length()];
+		}
+		for(int w = 0; w < words.length(); w++)
+		{
+			copy[w] = words.get(w);
+		}
+		return copy;
+	}
+
+	/**
+	 * @param set a bitset, e.g. from snapshot
+	 * @param from the first cell to look at
+	 * @param end one past the last cell to look at
+	 * @return the first cell in the bitset from from onwards, or end if there is none before end
+	 */
+	public static int next(long[] set, int from, int end)
+	{
+		if(from >= end)
+		{
+			return end;
+		}
+		int w = from >>> 6;
+		long word = set[w] & (-1L << from);
+		while(word == 0)
+		{
+			w++;
+			if(w << 6 >= end)
+			{
+				return end;
+			}
+			word = set[w];
+		}
+		return Math.min(end, (w << 6) + Long.numberOfTrailingZeros(word));
+	}
+}
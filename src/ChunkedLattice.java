@@ -0,0 +1,208 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * a World's lattice of Environments, stored as square chunks of CHUNK_SIZE x CHUNK_SIZE
+ * locations. A chunk is allocated the first time one of its locations is asked for, and
+ * released again by releaseIdle once none of its locations has held an agent for a while,
+ * so a large lattice only costs memory where the agents are.
+ * Chunks can be allocated from several tick threads at once; releasing is done by the
+ * thread that runs World.tick, between ticks.
+ */
+public class ChunkedLattice {
+	public static final int CHUNK_BITS = 6;
+	public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final World world;
+	private final int rows;
+	private final int cols;
+	private final int chunkColumns;
+	private final double mosquitoDensity;
+	private final AtomicReferenceArray<Environment[]> chunks;
+	//number of locations in each chunk that are in the world's active set
+	private final AtomicIntegerArray activeLocations;
+	//the tick each allocated chunk was first seen without active locations, -1 if it has some
+	private final long[] emptySince;
+
+	/**
+	 * @param world the world the locations belong to
+	 * @param rows the number of rows
+	 * @param cols the number of columns
+	 * @param mosquitoDensity the mosquito density of every location
+	 */
+	public ChunkedLattice(World world, int rows, int cols, double mosquitoDensity)
+	{
+		this.world = world;
+		this.rows = rows;
+		this.cols = cols;
+		this.mosquitoDensity = mosquitoDensity;
+		chunkColumns = (cols + CHUNK_MASK) >>> CHUNK_BITS;
+		int chunkRows = (rows + CHUNK_MASK) >>> CHUNK_BITS;
+		chunks = new AtomicReferenceArray<Environment[]>(chunkRows * chunkColumns);
+		activeLocations = new AtomicIntegerArray(chunks.length());
+		emptySince = new long[chunks.length()];
+		Arrays.fill(emptySince, -1);
+	}
+
+	/**
+	 * @param row a row between 0 and rows-1
+	 * @param col a column between 0 and cols-1
+	 * @return the location, allocating its chunk if it isn't already
+	 */
+	public Environment get(int row, int col)
+	{
+		int c = chunkIndex(row, col);
+		Environment[] chunk = chunks.get(c);
+		if(chunk == null)
+		{
+			chunk = allocate(c);
+		}
+		return chunk[indexInChunk(row, col)];
+	}
+
+	/**
+	 * @param row a row between 0 and rows-1
+	 * @param col a column between 0 and cols-1
+	 * @return the location, or null if its chunk isn't allocated
+	 */
+	public Environment find(int row, int col)
+	{
+		Environment[] chunk = chunks.get(chunkIndex(row, col));
+		return chunk == null ? null : chunk[indexInChunk(row, col)];
+	}
+
+	/**
+	 * @param c a chunk index
+	 * @return the allocated chunk
+	 */
+	private Environment[] allocate(int c)
+	{
+		int firstRow = (c / chunkColumns) << CHUNK_BITS;
+		int firstCol = (c % chunkColumns) << CHUNK_BITS;
+		Environment[] chunk = new Environment[CHUNK_SIZE * CHUNK_SIZE];
+		for(int i = firstRow; i < Math.min(rows, firstRow + CHUNK_SIZE); i++){
+			for(int j = firstCol; j < Math.min(cols, firstCol + CHUNK_SIZE); j++){
+				chunk[indexInChunk(i, j)] = new Environment(world, i, j, mosquitoDensity);
+			}
+		}
+		//another thread may have allocated the same chunk meanwhile, then use that one
+		if(!chunks.compareAndSet(c, null, chunk))
+		{
+			chunk = chunks.get(c);
+		}
+		return chunk;
+	}
+
+	private int chunkIndex(int row, int col)
+	{
+		return (row >>> CHUNK_BITS) * chunkColumns + (col >>> CHUNK_BITS);
+	}
+
+	private static int indexInChunk(int row, int col)
+	{
+		return ((row & CHUNK_MASK) << CHUNK_BITS) | (col & CHUNK_MASK);
+	}
+
+	/**
+	 * called when a location joins the world's active set
+	 * @param row the location's row
+	 * @param col the location's column
+	 */
+	void activated(int row, int col)
+	{
+		activeLocations.incrementAndGet(chunkIndex(row, col));
+	}
+
+	/**
+	 * called when a location leaves the world's active set
+	 * @param row the location's row
+	 * @param col the location's column
+	 */
+	void deactivated(int row, int col)
+	{
+		activeLocations.decrementAndGet(chunkIndex(row, col));
+	}
+
+	/**
+	 * release the chunks that have had no active locations since idleTicks ago.
+	 * Must not run while the world is ticking
+	 * @param tick the current tick
+	 * @param idleTicks how long a chunk has to stay empty
+	 * @return the number of chunks released
+	 */
+	int releaseIdle(long tick, long idleTicks)
+	{
+		int released = 0;
+		for(int c = 0; c < chunks.length(); c++)
+		{
+			if(chunks.get(c) == null)
+			{
+				continue;
+			}
+			if(activeLocations.get(c) > 0)
+			{
+				emptySince[c] = -1;
+			}else if(emptySince[c] < 0)
+			{
+				emptySince[c] = tick;
+			}else if(tick - emptySince[c] >= idleTicks)
+			{
+				chunks.set(c, null);
+				emptySince[c] = -1;
+				released++;
+			}
+		}
+		return released;
+	}
+
+	/**
+	 * @return the number of chunks, allocated or not
+	 */
+	public int getChunkCount()
+	{
+		return chunks.length();
+	}
+
+	/**
+	 * @param c a chunk index between 0 and getChunkCount()-1
+	 * @return the chunk's locations, null outside the lattice, or null if the chunk isn't allocated
+	 */
+	public Environment[] getChunk(int c)
+	{
+		return chunks.get(c);
+	}
+
+	/**
+	 * @return the number of allocated chunks
+	 */
+	public int getAllocatedChunks()
+	{
+		int count = 0;
+		for(int c = 0; c < chunks.length(); c++)
+		{
+			if(chunks.get(c) != null) count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+
+/**
+ * an event sink that prints the same messages agents used to print to System.out
+ */
+public class ConsoleEventSink implements EventSink {
+
+	@Override
+	public void record(Kind kind, long tick, long uid, String agentType, String strain, int row, int col)
+	{
+		switch(kind)
+		{
+		case INFECTED:
+			System.out.println(agentType + " " + uid + " became infectious");
+			break;
+		case RECOVERED:
+			System.out.println("agent" + uid + " " + agentType + " recovered");
+			break;
+		case DIED:
+			System.out.println("agent" + uid + " " + agentType + " died");
+			break;
+		case KILLED_FEEDING:
+			System.out.println(agentType + " " + uid + " was killed while feeding");
+			break;
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		System.out.flush();
+	}
+}
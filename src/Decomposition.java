@@ -0,0 +1,148 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+
+/**
+ * splits a lattice into a grid of rectangular domains, one per worker process of a
+ * DistributedRunner. Domain p covers rows getFirstRow(p) to getEndRow(p)-1 and columns
+ * getFirstColumn(p) to getEndColumn(p)-1; the grid is as close to square as the number
+ * of parts allows. A single part is the whole lattice
+ */
+public class Decomposition {
+	private final int rows;
+	private final int cols;
+	private final int rowBlocks;
+	private final int columnBlocks;
+
+	/**
+	 * @param rows the number of rows in the lattice
+	 * @param cols the number of columns in the lattice
+	 * @param parts the number of domains
+	 * @throws IllegalArgumentException if there are fewer than 1 or more parts than rows or columns allow
+	 */
+	public Decomposition(int rows, int cols, int parts)
+	{
+		if(parts < 1)
+		{
+			throw new IllegalArgumentException("parts must be at least 1");
+		}
+		int blocks = 1;
+		for(int b = 1; b * b <= parts; b++)
+		{
+			if(parts % b == 0) blocks = b;
+		}
+		//the longer side of the lattice gets the larger number of blocks
+		if(rows >= cols)
+		{
+			rowBlocks = parts / blocks;
+			columnBlocks = blocks;
+		}else{
+			rowBlocks = blocks;
+			columnBlocks = parts / blocks;
+		}
+		if(rowBlocks > rows || columnBlocks > cols)
+		{
+			throw new IllegalArgumentException("can't split " + rows + "x" + cols + " into " + parts + " parts");
+		}
+		this.rows = rows;
+		this.cols = cols;
+	}
+
+	/**
+	 * @return the number of domains
+	 */
+	public int getParts()
+	{
+		return rowBlocks * columnBlocks;
+	}
+
+	/**
+	 * @param row a row between 0 and rows-1
+	 * @param col a column between 0 and cols-1
+	 * @return the domain that contains the location
+	 */
+	public int owner(int row, int col)
+	{
+		return block(row, rows, rowBlocks) * columnBlocks + block(col, cols, columnBlocks);
+	}
+
+	/**
+	 * @param part a domain
+	 * @param row a row
+	 * @param col a column
+	 * @return true if the domain contains the location
+	 */
+	public boolean contains(int part, int row, int col)
+	{
+		return row >= getFirstRow(part) && row < getEndRow(part)
+				&& col >= getFirstColumn(part) && col < getEndColumn(part);
+	}
+
+	/**
+	 * @param part a domain
+	 * @return its first row
+	 */
+	public int getFirstRow(int part)
+	{
+		return start(part / columnBlocks, rows, rowBlocks);
+	}
+
+	/**
+	 * @param part a domain
+	 * @return one past its last row
+	 */
+	public int getEndRow(int part)
+	{
+		return start(part / columnBlocks + 1, rows, rowBlocks);
+	}
+
+	/**
+	 * @param part a domain
+	 * @return its first column
+	 */
+	public int getFirstColumn(int part)
+	{
+		return start(part % columnBlocks, cols, columnBlocks);
+	}
+
+	/**
+	 * @param part a domain
+	 * @return one past its last column
+	 */
+	public int getEndColumn(int part)
+	{
+		return start(part % columnBlocks + 1, cols, columnBlocks);
+	}
+
+	/**
+	 * @return the first index of block b when length indices are split into blocks blocks
+	 */
+	private static int start(int b, int length, int blocks)
+	{
+		return (int)((long)b * length / blocks);
+	}
+
+	/**
+	 * @return the block containing index i, the b with start(b) <= i < start(b+1)
+	 */
+	private static int block(int i, int length, int blocks)
+	{
+		return (int)(((long)(i + 1) * blocks - 1) / length);
+	}
+}
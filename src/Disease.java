@@ -22,27 +22,69 @@
 /**
  * A class representing a disease.
  * Has several states.
- * Also maintains the time since infection.
+ * Also records when the infection happened, on the clock of the world it happened in,
+ * so nothing has to be updated while time passes.
  */
 public class Disease {
 	
 	public enum State{NONE, SUSCEPTIBLE, INFECTED, RECOVERED};
 	
-	private String strain;
+	private final String strain;
+	//see StrainRegistry
+	private final int strainId;
 	private State state;
 	
-	//in seconds
-	private double timeSinceInfection;
+	//World.getElapsedSeconds() when the infection happened
+	private double infectedAt;
+	//the world whose clock the infection is timed by, null outside of any world
+	private final World world;
 	
 	/**
 	 * basic constructor that initializes the diseases strain.
+	 * The infection is taken to happen now, in the calling thread's current world
 	 * @param s a string representing the new strain
 	 */
 	public Disease(String s)
 	{
-		this.strain = s;
-		this.state = state.NONE;
-		timeSinceInfection = 0;
+		this(StrainRegistry.id(s), World.current());
+	}
+	
+	/**
+	 * a constructor for a strain that is already registered
+	 * @param strainId the strain's ID in the StrainRegistry
+	 * @param world the infected agent's world, whose clock times the infection
+	 */
+	Disease(int strainId, World world)
+	{
+		this.strainId = strainId;
+		this.strain = StrainRegistry.name(strainId);
+		this.state = State.NONE;
+		this.world = world;
+		infectedAt = now();
+	}
+	
+	/**
+	 * a constructor for an infection that happened earlier, e.g. in another World
+	 * @param strainId the strain's ID in the StrainRegistry
+	 * @param state the state of the infection
+	 * @param infectedAt World.getElapsedSeconds() at the time of infection
+	 * @param world the infected agent's world, whose clock times the infection
+	 */
+	Disease(int strainId, State state, double infectedAt, World world)
+	{
+		this.strainId = strainId;
+		this.strain = StrainRegistry.name(strainId);
+		this.state = state;
+		this.infectedAt = infectedAt;
+		this.world = world;
+	}
+	
+	/**
+	 * @return the infection's world's clock, or 0 if there is no world
+	 */
+	private double now()
+	{
+		return world == null ? 0 : world.getElapsedSeconds();
 	}
 	
 	/**
@@ -51,6 +93,12 @@ public class Disease {
 	public String getStrain(){
 		return strain;
 	}
+	/**
+	 * @return the strain's ID in the StrainRegistry
+	 */
+	public int getStrainId(){
+		return strainId;
+	}
 	/**
 	 * @return the current state of the disease
 	 */
@@ -59,10 +107,11 @@ public class Disease {
 	}
 	
 	/**
-	 * Set the disease state
+	 * Set the disease state. Agents call this from Agent.setDiseaseState(), which keeps
+	 * their tallies and infection masks in step; nothing else should
 	 * @param newState the new state
 	 */
-	public void setState(State newState)
+	void setState(State newState)
 	{
 		state = newState;
 	}
@@ -72,15 +121,24 @@ public class Disease {
 	 */
 	public double getTimeSinceInfection()
 	{
-		return timeSinceInfection;
+		return now() - infectedAt;
+	}
+	
+	/**
+	 * @return World.getElapsedSeconds() at the time of infection
+	 */
+	public double getInfectedAt()
+	{
+		return infectedAt;
 	}
 	
 	/**
-	 * simulate the agent's behavior for this time period
+	 * move the time of infection back, as if deltaTime more seconds had passed since.
+	 * The world's clock already does this, agents no longer call it every tick
 	 * @param deltaTime time that the simulation has advanced
 	 */
 	public void tick(double deltaTime)
 	{
-		timeSinceInfection += deltaTime;
+		infectedAt -= deltaTime;
 	}
 }
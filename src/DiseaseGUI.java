@@ -10,6 +10,9 @@ import java.awt.Label;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 
 import javax.swing.JComponent;
 import javax.swing.JFrame;
@@ -46,9 +49,11 @@ public class DiseaseGUI extends JPanel implements ActionListener{
 	private static final long serialVersionUID = 8832885560545657000L;
 	
 	private static Canvas canvas;
+	private static final LatticeRenderer renderer = new LatticeRenderer();
 	
 	private static ActionListener listener = null;
 	private static Timer displayTimer = null;
+	private static SimulationWorker worker = null;
 	
 	public static World theWorld;
 	/**
@@ -63,11 +68,45 @@ public class DiseaseGUI extends JPanel implements ActionListener{
 				Rectangle r = new Rectangle(0,0,800,800);
 			    setBounds(r);
 				setBackground(Color.white);
-				theWorld.render(g, r);
+				renderer.paint(g, r);
 				
 			}
+			
+			//the image covers the whole canvas, so don't clear it first
+			public void update(Graphics g)
+			{
+				paint(g);
+			}
 		};
 		canvas.setPreferredSize(getMaximumSize());
+		//wheel to zoom in and out around the pointer, drag to pan
+		MouseAdapter mouse = new MouseAdapter(){
+			private int lastX;
+			private int lastY;
+			
+			public void mousePressed(MouseEvent e)
+			{
+				lastX = e.getX();
+				lastY = e.getY();
+			}
+			
+			public void mouseDragged(MouseEvent e)
+			{
+				renderer.pan(e.getX() - lastX, e.getY() - lastY, new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()));
+				lastX = e.getX();
+				lastY = e.getY();
+				canvas.repaint();
+			}
+			
+			public void mouseWheelMoved(MouseWheelEvent e)
+			{
+				renderer.zoom(Math.pow(1.25, -e.getWheelRotation()), e.getX(), e.getY(), new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()));
+				canvas.repaint();
+			}
+		};
+		canvas.addMouseListener(mouse);
+		canvas.addMouseMotionListener(mouse);
+		canvas.addMouseWheelListener(mouse);
 		add(canvas, BorderLayout.SOUTH);
 		
 	}
@@ -108,44 +147,47 @@ public class DiseaseGUI extends JPanel implements ActionListener{
         /* Turn off metal's use of bold fonts */
         UIManager.put("swing.boldMetal", Boolean.FALSE);
         
-        javax.swing.SwingUtilities.invokeLater(new Runnable() {
-            public void run() {
-                createAndShowGUI();
-            }
-        });
-        
+        //build the world before the GUI can paint it, then only the worker touches it
         theWorld = new World(50, 50, 3600.0, 0.5, 2);
 		//add one or more infected agents
-		Environment groundZero = World.getRandomLocation();
+		Environment groundZero = theWorld.getRandomLocation();
 		Disease newInfection = new Disease("ACGT");
 		Human patientZero = new Human(groundZero.getRow(), groundZero.getColumn());
 		patientZero.recieveDisease(newInfection.getStrain());
 		groundZero.enter(patientZero);
+		worker = new SimulationWorker(theWorld, Long.MAX_VALUE);
 		
+        //the timer runs on the event dispatch thread and shows the newest snapshot, if any,
+        //at up to 30 frames per second; the worker ticks as fast as it can meanwhile
         listener = new ActionListener(){
         	  public void actionPerformed(ActionEvent event){
-        		displayTimer.stop();
-        		//advance the time'
-	      		theWorld.tick();
-        		int infectionCount = theWorld.countInfections();
-    			if(infectionCount <= 0)
+        		WorldSnapshot snapshot = worker.takeSnapshot();
+        		if(snapshot == null)
+        		{
+        			return;
+        		}
+        		snapshot.renderTo(renderer);
+        		canvas.repaint();
+    			if(snapshot.isFinished())
     			{
     				displayTimer.stop();
     				System.out.println("Simulation finished");
     			}
     			else
     			{
-    				canvas.repaint();
-    				System.out.println("time: " + World.getTime().getTime() + "number of infections: " + infectionCount);
-    				displayTimer.restart();
-	      			
+    				System.out.println("time: " + snapshot.getTime() + "number of infections: " + snapshot.getInfected());
     			}
         	  }
         };
-        displayTimer = new Timer(1000, listener);
-    	displayTimer.start();
-
         
+        javax.swing.SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                createAndShowGUI();
+                displayTimer = new Timer(33, listener);
+                displayTimer.start();
+                worker.start();
+            }
+        });
 	}
 	
 	/**
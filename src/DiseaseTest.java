@@ -84,4 +84,19 @@ public class DiseaseTest {
 		testDisease.tick(60.0);
 		assertEquals(3660.0,testDisease.getTimeSinceInfection(),0.000001);
 	}
+	
+	/**
+	 * an agent's infection is timed by the agent's world, not by whichever world the
+	 * calling thread made current last
+	 */
+	@Test
+	public void testTimedByAgentsWorld(){
+		World home = new World(5, 5, 3600.0, 0.5, 0);
+		Human patient = new Human(2, 2);
+		patient.recieveDisease("ACGT");
+		home.tick();
+		new World(5, 5, 3600.0, 0.5, 0);
+		assertEquals(3600.0, patient.getInfections()[0].getTimeSinceInfection(), 0.000001);
+		World.setCurrent(null);
+	}
 }
@@ -0,0 +1,430 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * runs one simulation split over several worker processes on this machine, so the lattice
+ * is not limited by one JVM's heap. Each worker owns one domain of a Decomposition and ticks
+ * a World that only holds that domain. After each tick's moves the workers send the agents
+ * that left their domain to this coordinator over loopback sockets, which passes them on to
+ * the workers that own their new locations; after the tick it adds up the workers' S/I/R
+ * tallies and tells them whether to carry on.
+ * usage: java DistributedRunner [-workers n] [-rows n] [-cols n] [-step seconds] [-humans density]
+ *  [-mosquitoes density] [-mosquitoModel agents|compartments] [-start epochSeconds] [-seed n] [-infected n]
+ *  [-maxTicks n] [-threads n] [-levy exponent] [-border clamp|reflect|wrap]
+ * -threads is the number of threads each worker ticks its world with. Agent events are dropped
+ */
+public class DistributedRunner {
+
+	int workers = 2;
+	int rows = 50;
+	int cols = 50;
+	double timeStepSeconds = 3600.0;
+	double humanDensity = 2;
+	double mosquitoDensity = 0.5;
+	boolean mosquitoCompartments = false;
+	long startTime = SimClock.DEFAULT_START;
+	long seed = 55;
+	int initialInfections = 1;
+	long maxTicks = Long.MAX_VALUE;
+	int threads = 1;
+	double levyExponent = 0;
+	LevyFlight.Border border = LevyFlight.Border.CLAMP;
+	//set in the worker processes only
+	int part = -1;
+	int port = -1;
+	private String[] args = new String[0];
+
+	//results of the last run
+	long ticks;
+	long agentUpdates;
+	long elapsedNanos;
+	int susceptible;
+	int infections;
+	int recovered;
+	long migrants;
+	long humans;
+
+	/**
+	 * parse the command line arguments into this runner's settings
+	 * @param args pairs of "-option value"
+	 * @throws IllegalArgumentException if an option is unknown or has no value
+	 */
+	public void parse(String[] args)
+	{
+		for(int i = 0; i < args.length; i += 2)
+		{
+			if(i + 1 >= args.length)
+			{
+				throw new IllegalArgumentException("missing value for " + args[i]);
+			}
+			String option = args[i];
+			String value = args[i + 1];
+			if(option.equals("-workers")) workers = Integer.parseInt(value);
+			else if(option.equals("-rows")) rows = Integer.parseInt(value);
+			else if(option.equals("-cols")) cols = Integer.parseInt(value);
+			else if(option.equals("-step")) timeStepSeconds = Double.parseDouble(value);
+			else if(option.equals("-humans")) humanDensity = Double.parseDouble(value);
+			else if(option.equals("-mosquitoes")) mosquitoDensity = Double.parseDouble(value);
+			else if(option.equals("-mosquitoModel")) mosquitoCompartments = BatchRunner.parseMosquitoModel(value);
+			else if(option.equals("-start")) startTime = Long.parseLong(value);
+			else if(option.equals("-seed")) seed = Long.parseLong(value);
+			else if(option.equals("-infected")) initialInfections = Integer.parseInt(value);
+			else if(option.equals("-maxTicks")) maxTicks = Long.parseLong(value);
+			else if(option.equals("-threads")) threads = Integer.parseInt(value);
+			else if(option.equals("-levy")) levyExponent = Double.parseDouble(value);
+			else if(option.equals("-border")) border = LevyFlight.Border.valueOf(value.toUpperCase());
+			else if(option.equals("-worker")) part = Integer.parseInt(value);
+			else if(option.equals("-port")) port = Integer.parseInt(value);
+			else throw new IllegalArgumentException("unknown option " + option);
+		}
+		//the workers are started with the same settings
+		this.args = args.clone();
+	}
+
+	/**
+	 * start the workers, run the simulation until there are no infections left or the
+	 * tick limit is reached, and wait for the workers to exit
+	 * @throws IOException if a worker can't be started or stops answering
+	 */
+	public void run() throws IOException
+	{
+		Decomposition decomposition = new Decomposition(rows, cols, workers);
+		ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress());
+		Process[] processes = new Process[workers];
+		Socket[] sockets = new Socket[workers];
+		try
+		{
+			server.setSoTimeout(60000);
+			for(int p = 0; p < workers; p++)
+			{
+				processes[p] = launch(p, server.getLocalPort());
+			}
+			DataInputStream[] in = new DataInputStream[workers];
+			DataOutputStream[] out = new DataOutputStream[workers];
+			for(int i = 0; i < workers; i++)
+			{
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				int p = input.readInt();
+				sockets[p] = socket;
+				in[p] = input;
+				out[p] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			}
+			ticks = 0;
+			long start = System.nanoTime();
+			boolean more;
+			do
+			{
+				exchangeMigrants(in, out);
+				susceptible = 0;
+				infections = 0;
+				recovered = 0;
+				agentUpdates = 0;
+				migrants = 0;
+				for(int p = 0; p < workers; p++)
+				{
+					susceptible += in[p].readInt();
+					infections += in[p].readInt();
+					recovered += in[p].readInt();
+					agentUpdates += in[p].readLong();
+					migrants += in[p].readLong();
+				}
+				ticks++;
+				//the first tick places the initial infections, so always do at least one
+				more = ticks < maxTicks && infections > 0;
+				for(int p = 0; p < workers; p++)
+				{
+					out[p].writeBoolean(more);
+					out[p].flush();
+				}
+			}while(more);
+			elapsedNanos = System.nanoTime() - start;
+			humans = 0;
+			for(int p = 0; p < workers; p++)
+			{
+				humans += in[p].readLong();
+			}
+			for(int p = 0; p < workers; p++)
+			{
+				if(processes[p].waitFor() != 0)
+				{
+					throw new IOException("worker " + p + " exited with " + processes[p].exitValue());
+				}
+			}
+		}catch(InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for the workers", ex);
+		}finally{
+			for(int p = 0; p < workers; p++)
+			{
+				if(sockets[p] != null) sockets[p].close();
+				if(processes[p] != null) processes[p].destroy();
+			}
+			server.close();
+		}
+	}
+
+	/**
+	 * start a worker process with this runner's settings
+	 * @param p the domain it owns
+	 * @param coordinatorPort the port it reports to
+	 * @return the process
+	 * @throws IOException if it can't be started
+	 */
+	private Process launch(int p, int coordinatorPort) throws IOException
+	{
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(DistributedRunner.class.getName());
+		command.addAll(Arrays.asList(args));
+		command.add("-worker");
+		command.add(Integer.toString(p));
+		command.add("-port");
+		command.add(Integer.toString(coordinatorPort));
+		return new ProcessBuilder(command).inheritIO().start();
+	}
+
+	/**
+	 * read every worker's emigrants, already grouped by the worker they are going to,
+	 * and send each worker the agents coming to it, in the order of the workers they come from
+	 * @param in the workers' input streams
+	 * @param out the workers' output streams
+	 * @throws IOException if a worker stops answering
+	 */
+	private void exchangeMigrants(DataInputStream[] in, DataOutputStream[] out) throws IOException
+	{
+		int[][] counts = new int[workers][workers];
+		byte[][][] agents = new byte[workers][workers][];
+		for(int from = 0; from < workers; from++)
+		{
+			for(int to = 0; to < workers; to++)
+			{
+				counts[from][to] = in[from].readInt();
+				agents[from][to] = new byte[in[from].readInt()];
+				in[from].readFully(agents[from][to]);
+			}
+		}
+		for(int to = 0; to < workers; to++)
+		{
+			int count = 0;
+			for(int from = 0; from < workers; from++)
+			{
+				count += counts[from][to];
+			}
+			out[to].writeInt(count);
+			for(int from = 0; from < workers; from++)
+			{
+				out[to].write(agents[from][to]);
+			}
+			out[to].flush();
+		}
+	}
+
+	/**
+	 * the worker's side of the exchange, through the coordinator
+	 */
+	static class CoordinatorLink implements MigrationChannel {
+		private final Decomposition decomposition;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+
+		CoordinatorLink(Decomposition decomposition, DataInputStream in, DataOutputStream out)
+		{
+			this.decomposition = decomposition;
+			this.in = in;
+			this.out = out;
+		}
+
+		@Override
+		public List<Agent> exchange(List<Agent> emigrants)
+		{
+			int parts = decomposition.getParts();
+			try
+			{
+				int[] counts = new int[parts];
+				ByteArrayOutputStream[] bytes = new ByteArrayOutputStream[parts];
+				DataOutputStream[] encoders = new DataOutputStream[parts];
+				for(int p = 0; p < parts; p++)
+				{
+					bytes[p] = new ByteArrayOutputStream();
+					encoders[p] = new DataOutputStream(bytes[p]);
+				}
+				for(Agent agent : emigrants)
+				{
+					int p = decomposition.owner(agent.getRow(), agent.getColumn());
+					MigrantCodec.write(agent, encoders[p]);
+					counts[p]++;
+				}
+				for(int p = 0; p < parts; p++)
+				{
+					out.writeInt(counts[p]);
+					out.writeInt(bytes[p].size());
+					bytes[p].writeTo(out);
+				}
+				out.flush();
+				int count = in.readInt();
+				List<Agent> immigrants = new ArrayList<Agent>(count);
+				for(int i = 0; i < count; i++)
+				{
+					immigrants.add(MigrantCodec.read(in));
+				}
+				return immigrants;
+			}catch(IOException ex)
+			{
+				throw new IllegalStateException("lost the connection to the coordinator", ex);
+			}
+		}
+	}
+
+	/**
+	 * run this process's domain as a worker until the coordinator says to stop
+	 * @throws IOException if the coordinator can't be reached
+	 */
+	void work() throws IOException
+	{
+		Decomposition decomposition = new Decomposition(rows, cols, workers);
+		World theWorld = new World(rows, cols, timeStepSeconds, mosquitoDensity, humanDensity, seed, decomposition, part);
+		theWorld.setEventSink(new NullEventSink());
+		theWorld.setStartTime(startTime);
+		theWorld.useMosquitoCompartments(mosquitoCompartments);
+		theWorld.setParallelism(threads);
+		if(levyExponent > 0)
+		{
+			theWorld.setLevyFlight(LevyFlight.powerLaw(levyExponent, Math.max(rows, cols), border));
+		}else{
+			theWorld.setLevyFlight(LevyFlight.geometric(border));
+		}
+		//every worker picks the same locations, only their owners place the humans
+		for(int i = 0; i < initialInfections; i++)
+		{
+			theWorld.introduceInfection("ACGT");
+		}
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		try
+		{
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(part);
+			out.flush();
+			theWorld.setMigrationChannel(new CoordinatorLink(decomposition, in, out));
+			do
+			{
+				theWorld.tick();
+				out.writeInt(theWorld.countSusceptible());
+				out.writeInt(theWorld.countInfections());
+				out.writeInt(theWorld.countRecovered());
+				out.writeLong(theWorld.getAgentUpdates());
+				out.writeLong(theWorld.getMigrants());
+				out.flush();
+			}while(in.readBoolean());
+			out.writeLong(countHumans(theWorld));
+			out.flush();
+		}finally{
+			theWorld.setParallelism(1);
+			socket.close();
+		}
+	}
+
+	/**
+	 * @param world a world between ticks
+	 * @return the number of humans in its locations
+	 */
+	static long countHumans(World world)
+	{
+		long count = 0;
+		ChunkedLattice lattice = world.getLattice();
+		for(int c = 0; c < lattice.getChunkCount(); c++){
+			Environment[] chunk = lattice.getChunk(c);
+			for(int i = 0; chunk != null && i < chunk.length; i++){
+				if(chunk[i] != null) count += chunk[i].countHumans();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return a human readable summary of the last run
+	 */
+	public String report()
+	{
+		double seconds = elapsedNanos / 1e9;
+		StringBuilder sb = new StringBuilder();
+		sb.append("lattice: ").append(rows).append("x").append(cols);
+		sb.append(" seed: ").append(seed);
+		sb.append(" workers: ").append(workers).append('\n');
+		sb.append("ticks: ").append(ticks);
+		sb.append(" elapsed: ").append(String.format("%.3f", seconds)).append(" s\n");
+		sb.append("ticks/sec: ").append(String.format("%.1f", ticks / seconds)).append('\n');
+		sb.append("agent updates: ").append(agentUpdates);
+		sb.append(" agent-updates/sec: ").append(String.format("%.0f", agentUpdates / seconds)).append('\n');
+		sb.append("migrants: ").append(migrants);
+		sb.append(" humans: ").append(humans).append('\n');
+		sb.append("susceptible: ").append(susceptible);
+		sb.append(" infected: ").append(infections);
+		sb.append(" recovered: ").append(recovered);
+		return sb.toString();
+	}
+
+	/**
+	 * run a distributed simulation and print its report, or with -worker run one of its workers
+	 * @param args see the class description
+	 * @throws IOException if the workers or the coordinator can't be reached
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		DistributedRunner runner = new DistributedRunner();
+		try
+		{
+			runner.parse(args);
+		}catch(IllegalArgumentException ex)
+		{
+			System.err.println(ex.getMessage());
+			System.err.println("usage: java DistributedRunner [-workers n] [-rows n] [-cols n] [-step seconds] [-humans density]"
+					+ " [-mosquitoes density] [-mosquitoModel agents|compartments] [-start epochSeconds] [-seed n] [-infected n]"
+					+ " [-maxTicks n] [-threads n] [-levy exponent] [-border clamp|reflect|wrap]");
+			System.exit(1);
+		}
+		if(runner.part >= 0)
+		{
+			runner.work();
+		}else{
+			runner.run();
+			System.out.println(runner.report());
+		}
+	}
+}
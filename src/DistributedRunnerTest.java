@@ -0,0 +1,85 @@
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import org.junit.Test;
+
+/**
+ * This class tests the DistributedRunner class and the Decomposition it splits the lattice with
+ */
+public class DistributedRunnerTest {
+
+	/**
+	 * every location has exactly one owner, and the owner's domain contains it
+	 */
+	@Test
+	public void testDecomposition(){
+		int[][] shapes = {{10, 10, 3}, {7, 30, 6}, {64, 5, 4}, {1, 1, 1}};
+		for(int[] shape : shapes){
+			Decomposition decomposition = new Decomposition(shape[0], shape[1], shape[2]);
+			assertEquals(shape[2], decomposition.getParts());
+			int[] sizes = new int[shape[2]];
+			for(int row = 0; row < shape[0]; row++){
+				for(int col = 0; col < shape[1]; col++){
+					int owner = decomposition.owner(row, col);
+					assertTrue(decomposition.contains(owner, row, col));
+					sizes[owner]++;
+				}
+			}
+			for(int p = 0; p < shape[2]; p++){
+				int rows = decomposition.getEndRow(p) - decomposition.getFirstRow(p);
+				int cols = decomposition.getEndColumn(p) - decomposition.getFirstColumn(p);
+				assertEquals(rows * cols, sizes[p]);
+			}
+		}
+	}
+
+	/**
+	 * an agent read by MigrantCodec keeps its UID and takes none from the world it arrives in,
+	 * so that world's UIDs don't depend on how many agents moved in
+	 * @throws Exception if the agents can't be written or read
+	 */
+	@Test
+	public void testMigrantsKeepTheirUIDs() throws Exception{
+		World from = new World(5, 5, 3600.0, 0.5, 0, 4);
+		Human human = new Human(1, 2);
+		human.recieveDisease("ACGT");
+		Mosquito mosquito = new Mosquito(3, 4, 3600.0);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		MigrantCodec.write(human, out);
+		MigrantCodec.write(mosquito, out);
+		out.close();
+
+		//the world the agents arrive in becomes the current one
+		new World(5, 5, 3600.0, 0.5, 0, 4);
+		long first = new Human(0, 0).getUID();
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(human.getUID(), MigrantCodec.read(in).getUID());
+		assertEquals(mosquito.getUID(), MigrantCodec.read(in).getUID());
+		assertEquals(first + 1, new Human(0, 0).getUID());
+		World.setCurrent(null);
+	}
+
+	/**
+	 * two worker processes start with the population of a single world with the same seed,
+	 * trade agents across their border and lose none of them
+	 * @throws Exception if the workers can't be run
+	 */
+	@Test(timeout = 120000)
+	public void testTwoWorkers() throws Exception{
+		DistributedRunner runner = new DistributedRunner();
+		runner.parse(new String[]{"-workers", "2", "-rows", "30", "-cols", "30", "-humans", "1", "-seed", "21", "-maxTicks", "48"});
+		runner.run();
+		assertTrue(runner.ticks > 0);
+		assertTrue(runner.migrants > 0);
+
+		World single = new World(30, 30, 3600.0, 0.5, 1, 21);
+		single.setEventSink(new NullEventSink());
+		single.introduceInfection("ACGT");
+		single.tick();
+		assertEquals(DistributedRunner.countHumans(single), runner.humans);
+		World.setCurrent(null);
+	}
+}
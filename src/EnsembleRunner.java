@@ -0,0 +1,236 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * runs many independently seeded replicates of the same simulation concurrently in one JVM
+ * and summarizes their outcomes with streaming statistics, so no per-run trajectories are kept.
+ * Replicate r uses seed + r, so any single replicate can be rerun with BatchRunner -seed.
+ * usage: java EnsembleRunner [-replicates n] [-threads n] [-seed n] [-rows n] [-cols n] [-step seconds]
+ *  [-humans density] [-mosquitoes density] [-mosquitoModel agents|compartments] [-start epochSeconds] [-infected n] [-maxTicks n]
+ */
+public class EnsembleRunner {
+
+	int rows = 50;
+	int cols = 50;
+	double timeStepSeconds = 3600.0;
+	double humanDensity = 2;
+	double mosquitoDensity = 0.5;
+	boolean mosquitoCompartments = false;
+	long startTime = SimClock.DEFAULT_START;
+	long seed = 55;
+	int initialInfections = 1;
+	long maxTicks = 24 * 365;
+	int replicates = 100;
+	int threads = Runtime.getRuntime().availableProcessors();
+
+	//results of the last run
+	final RunningStatistics attackRate = new RunningStatistics();
+	final RunningStatistics peakInfections = new RunningStatistics();
+	final RunningStatistics extinctionTicks = new RunningStatistics();
+	//replicates that still had infections after maxTicks, not included in extinctionTicks
+	int censored;
+	long elapsedNanos;
+
+	/**
+	 * the outcome of one replicate
+	 */
+	static class Outcome {
+		//fraction of humans that were ever infected
+		double attackRate;
+		//largest number of infected agents (humans and mosquitoes) after any tick
+		int peakInfections;
+		//ticks until there were no infections left, or maxTicks
+		long ticks;
+		boolean extinct;
+	}
+
+	/**
+	 * parse the command line arguments into this runner's settings
+	 * @param args pairs of "-option value"
+	 * @throws IllegalArgumentException if an option is unknown or has no value
+	 */
+	public void parse(String[] args)
+	{
+		for(int i = 0; i < args.length; i += 2)
+		{
+			if(i + 1 >= args.length)
+			{
+				throw new IllegalArgumentException("missing value for " + args[i]);
+			}
+			String option = args[i];
+			String value = args[i + 1];
+			if(option.equals("-rows")) rows = Integer.parseInt(value);
+			else if(option.equals("-cols")) cols = Integer.parseInt(value);
+			else if(option.equals("-step")) timeStepSeconds = Double.parseDouble(value);
+			else if(option.equals("-humans")) humanDensity = Double.parseDouble(value);
+			else if(option.equals("-mosquitoes")) mosquitoDensity = Double.parseDouble(value);
+			else if(option.equals("-mosquitoModel")) mosquitoCompartments = BatchRunner.parseMosquitoModel(value);
+			else if(option.equals("-start")) startTime = Long.parseLong(value);
+			else if(option.equals("-seed")) seed = Long.parseLong(value);
+			else if(option.equals("-infected")) initialInfections = Integer.parseInt(value);
+			else if(option.equals("-maxTicks")) maxTicks = Long.parseLong(value);
+			else if(option.equals("-replicates")) replicates = Integer.parseInt(value);
+			else if(option.equals("-threads")) threads = Integer.parseInt(value);
+			else throw new IllegalArgumentException("unknown option " + option);
+		}
+	}
+
+	/**
+	 * run one replicate on the calling thread
+	 * @param replicateSeed the seed of the replicate's world
+	 * @return the replicate's outcome
+	 */
+	Outcome runReplicate(long replicateSeed)
+	{
+		World world = new World(rows, cols, timeStepSeconds, mosquitoDensity, humanDensity, replicateSeed);
+		try
+		{
+			world.setEventSink(new NullEventSink());
+			world.setStartTime(startTime);
+			world.useMosquitoCompartments(mosquitoCompartments);
+			for(int i = 0; i < initialInfections; i++)
+			{
+				world.introduceInfection("ACGT");
+			}
+			Outcome outcome = new Outcome();
+			//the first tick places the initial infections, so always do at least one
+			do
+			{
+				world.tick();
+				outcome.ticks++;
+				outcome.peakInfections = Math.max(outcome.peakInfections, world.countInfections());
+			}while(outcome.ticks < maxTicks && world.countInfections() > 0);
+			outcome.extinct = world.countInfections() == 0;
+			
+			int humans = 0;
+			int everInfected = 0;
+			for(int i = 0; i < world.getRows(); i++){
+				for(int j = 0; j < world.getColumns(); j++){
+					Environment location = world.findLocation(i, j);
+					if(location == null) continue;
+					for(Agent human : location.getAll(Human.type))
+					{
+						humans++;
+						if(!human.isSusceptible()) everInfected++;
+					}
+				}
+			}
+			outcome.attackRate = humans == 0 ? 0 : (double)everInfected / humans;
+			return outcome;
+		}finally{
+			//don't keep the finished world alive through the pool thread
+			World.setCurrent(null);
+		}
+	}
+
+	/**
+	 * run every replicate on a pool of threads, adding each outcome to the statistics as it finishes
+	 * @throws InterruptedException if interrupted while waiting for a replicate
+	 * @throws ExecutionException if a replicate failed
+	 */
+	public void run() throws InterruptedException, ExecutionException
+	{
+		attackRate.clear();
+		peakInfections.clear();
+		extinctionTicks.clear();
+		censored = 0;
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try
+		{
+			CompletionService<Outcome> done = new ExecutorCompletionService<Outcome>(pool);
+			for(int r = 0; r < replicates; r++)
+			{
+				final long replicateSeed = seed + r;
+				done.submit(new Callable<Outcome>(){
+					@Override
+					public Outcome call()
+					{
+						return runReplicate(replicateSeed);
+					}
+				});
+			}
+			//only this thread touches the statistics
+			for(int r = 0; r < replicates; r++)
+			{
+				Outcome outcome = done.take().get();
+				attackRate.add(outcome.attackRate);
+				peakInfections.add(outcome.peakInfections);
+				if(outcome.extinct)
+				{
+					extinctionTicks.add(outcome.ticks);
+				}else{
+					censored++;
+				}
+			}
+		}finally{
+			pool.shutdownNow();
+		}
+		elapsedNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * @return a human readable summary of the last run
+	 */
+	public String report()
+	{
+		double seconds = elapsedNanos / 1e9;
+		StringBuilder sb = new StringBuilder();
+		sb.append("lattice: ").append(rows).append("x").append(cols);
+		sb.append(" replicates: ").append(replicates);
+		sb.append(" seeds: ").append(seed).append("..").append(seed + replicates - 1);
+		sb.append(" threads: ").append(threads).append('\n');
+		sb.append("elapsed: ").append(String.format("%.3f", seconds)).append(" s");
+		sb.append(" replicates/sec: ").append(String.format("%.2f", replicates / seconds)).append('\n');
+		sb.append("attack rate: ").append(attackRate).append('\n');
+		sb.append("peak infections: ").append(peakInfections).append('\n');
+		sb.append("extinction tick: ").append(extinctionTicks);
+		sb.append(" still infected after ").append(maxTicks).append(" ticks: ").append(censored);
+		return sb.toString();
+	}
+
+	/**
+	 * run the ensemble and print the summary
+	 * @param args see the class description
+	 * @throws Exception if a replicate failed
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		EnsembleRunner runner = new EnsembleRunner();
+		try
+		{
+			runner.parse(args);
+		}catch(IllegalArgumentException ex)
+		{
+			System.err.println(ex.getMessage());
+			System.err.println("usage: java EnsembleRunner [-replicates n] [-threads n] [-seed n] [-rows n] [-cols n] [-step seconds]"
+					+ " [-humans density] [-mosquitoes density] [-mosquitoModel agents|compartments] [-start epochSeconds] [-infected n] [-maxTicks n]");
+			System.exit(1);
+		}
+		runner.run();
+		System.out.println(runner.report());
+	}
+}
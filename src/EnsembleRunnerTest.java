@@ -0,0 +1,36 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class tests that ensemble results depend only on the seeds, not on the thread count
+ */
+public class EnsembleRunnerTest {
+
+	/**
+	 * Runs the same replicates on one and on three threads; the statistics must match.
+	 */
+	@Test
+	public void testThreadCountDoesNotChangeResults() throws Exception {
+		EnsembleRunner serial = smallEnsemble(1);
+		EnsembleRunner parallel = smallEnsemble(3);
+		assertEquals(serial.censored, parallel.censored);
+		assertEquals(serial.attackRate.getMean(), parallel.attackRate.getMean(), 1e-12);
+		assertEquals(serial.attackRate.getVariance(), parallel.attackRate.getVariance(), 1e-12);
+		assertEquals(serial.peakInfections.getMax(), parallel.peakInfections.getMax(), 0);
+		assertEquals(serial.extinctionTicks.getCount(), parallel.extinctionTicks.getCount());
+		assertEquals(serial.extinctionTicks.getMean(), parallel.extinctionTicks.getMean(), 1e-9);
+	}
+	
+	/**
+	 * @param threads the thread count
+	 * @return a finished run of 6 replicates on a small lattice
+	 */
+	private static EnsembleRunner smallEnsemble(int threads) throws Exception {
+		EnsembleRunner runner = new EnsembleRunner();
+		runner.parse(new String[]{"-rows", "15", "-cols", "15", "-humans", "5", "-replicates", "6",
+				"-maxTicks", "400", "-threads", Integer.toString(threads)});
+		runner.run();
+		assertEquals(6, runner.attackRate.getCount());
+		return runner;
+	}
+}
@@ -20,7 +20,12 @@
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 /**
  * a class that represents one location as part of a lattice
  * holds a list of Agents that are at this location
@@ -28,33 +33,77 @@ import java.util.Vector;
  * has an associated row, column, and mosquito density
  */
 public class Environment {
-	private Vector<Agent> inhabitants = new Vector<Agent>();
-	private Vector<Agent> entrantList = new Vector<Agent>();
-	private Vector<Agent> exitantList = new Vector<Agent>();
+	//the inhabitants, with the humans kept apart so a mosquito can find one to bite without looking at the rest
+	private AgentList humans = new AgentList();
+	//mosquitoes and any other agents. Most locations never hold one, so until one enters
+	//this is the shared empty list, which keeps every location a little smaller
+	private AgentList others = NO_AGENTS;
+	private static final AgentList NO_AGENTS = new AgentList();
+	//(1-Mosquito.bite_rate)^n, the chance that none of n humans or mosquitoes bites or is bitten
+	private static final double[] NO_BITES = new double[256];
+	static
+	{
+		for(int n = 0; n < NO_BITES.length; n++)
+		{
+			NO_BITES[n] = Math.pow(1 - Mosquito.bite_rate, n);
+		}
+	}
+	//entrants can come from any location on any thread, so they are pushed onto a lock-free
+	//stack linked through Agent.nextEntrant; exits only ever come from agents ticked at this
+	//location and need no lock
+	private volatile Agent entrants = null;
+	private static final AtomicReferenceFieldUpdater<Environment, Agent> ENTRANTS =
+			AtomicReferenceFieldUpdater.newUpdater(Environment.class, Agent.class, "entrants");
+	private ArrayList<Agent> exitantList = new ArrayList<Agent>();
+	private final World world;
 	private double mosquitoDensity;
 	private int column;
 	private int row;
-	private Mosquito temp_mosquito;
+	//made when first needed, see getReserveMosquito
+	private Mosquito temp_mosquito = null;
+	//mosquitoes as counts instead of agents, null unless the world uses mosquito compartments
+	private MosquitoCompartments mosquitoes = null;
+	//number of inhabitants in each Disease.State, indexed by ordinal
+	private int[] tally = new int[Disease.State.values().length];
 	/**
-	 * basic constructor that instantiates mosquito densty and a mosquito at the 
-	 * input row/column
+	 * basic constructor that instantiates mosquito densty at the input row/column,
+	 * the reserve mosquito is made when it is first needed
+	 * @param world the world this location is part of
 	 * @param row the agent's initial row
 	 * @param col the agent's initial column
 	 * @param mosquitoDensity the mosquito density at this location
 	 */
-	public Environment(int row, int col, double mosquitoDensity){
+	public Environment(World world, int row, int col, double mosquitoDensity){
+		this.world = world;
 		this.mosquitoDensity = mosquitoDensity;
 		this.row = row;
 		this.column = col;
-		temp_mosquito = new Mosquito(row,col);
 	}
 	
 	/**
-	 * buffer Agents that will enter this location
+	 * buffer Agents that will enter this location. Entering again before the entrances are
+	 * done has no effect, the agent is only taken in once
 	 * @param e the agent entering
+	 * @throws IllegalStateException if the agent is already waiting to enter another location
 	 */
 	public void enter(Agent e){
-		entrantList.add(e);
+		if(e.entering == this)
+		{
+			//pushing it twice would link it to itself
+			return;
+		}
+		if(e.entering != null)
+		{
+			throw new IllegalStateException("agent " + e.getUID() + " is already waiting to enter another location");
+		}
+		e.entering = this;
+		Agent head;
+		do
+		{
+			head = entrants;
+			e.nextEntrant = head;
+		}while(!ENTRANTS.compareAndSet(this, head, e));
+		world.activate(row, column);
 	}
 	
 	/**
@@ -66,18 +115,137 @@ public class Environment {
 		exitantList.add(e);
 	}
 	/**
-	 * call when it's time for the agents entering this location to be processed
-	 * then clear the entrant list
+	 * take every agent waiting to enter this location
+	 * @param buffer where to put them
+	 * @return how many there are, they are the first ones in buffer.agents in order of UID
+	 */
+	private int drainEntrants(EntrantBuffer buffer)
+	{
+		//the order they were pushed in depends on how the threads ran, their UIDs don't
+		int count = 0;
+		Agent next;
+		for(Agent agent = ENTRANTS.getAndSet(this, null); agent != null; agent = next)
+		{
+			next = agent.nextEntrant;
+			agent.nextEntrant = null;
+			agent.entering = null;
+			buffer.add(count++, agent);
+		}
+		buffer.sort(count);
+		return count;
+	}
+	
+	/**
+	 * a thread's space for sorting the entrants of one location at a time. The UIDs are
+	 * kept next to the agents so the sort doesn't have to look at the agents themselves
+	 */
+	private static final class EntrantBuffer {
+		//longer lists are left to Arrays.sort
+		private static final int INSERTION_SORT_MAX = 64;
+		private static final Comparator<Agent> BY_UID = new Comparator<Agent>()
+		{
+			@Override
+			public int compare(Agent a, Agent b)
+			{
+				return a.getUID() < b.getUID() ? -1 : (a.getUID() == b.getUID() ? 0 : 1);
+			}
+		};
+		Agent[] agents = new Agent[INSERTION_SORT_MAX];
+		long[] uids = new long[INSERTION_SORT_MAX];
+		
+		void add(int index, Agent agent)
+		{
+			if(index == agents.length)
+			{
+				agents = Arrays.copyOf(agents, index * 2);
+				uids = Arrays.copyOf(uids, index * 2);
+			}
+			agents[index] = agent;
+			uids[index] = agent.getUID();
+		}
+		
+		void sort(int count)
+		{
+			if(count > INSERTION_SORT_MAX)
+			{
+				Arrays.sort(agents, 0, count, BY_UID);
+				return;
+			}
+			for(int i = 1; i < count; i++)
+			{
+				Agent agent = agents[i];
+				long uid = uids[i];
+				int j = i;
+				for(; j > 0 && uids[j - 1] > uid; j--)
+				{
+					agents[j] = agents[j - 1];
+					uids[j] = uids[j - 1];
+				}
+				agents[j] = agent;
+				uids[j] = uid;
+			}
+		}
+	}
+	
+	private static final ThreadLocal<EntrantBuffer> ENTRANT_BUFFERS = new ThreadLocal<EntrantBuffer>()
+	{
+		@Override
+		protected EntrantBuffer initialValue()
+		{
+			return new EntrantBuffer();
+		}
+	};
+	
+	/**
+	 * call when it's time for the agents entering this location to be processed, in order
+	 * of UID. Every location's doExits must have run first, because an agent's slot changes
+	 * as soon as it enters its new location
 	 */
 	public void doEntrances()
 	{
-		//purge entrantList
-		for(Agent agent : entrantList)
+		if(entrants == null)
 		{
-			inhabitants.add(agent);
+			return;
+		}
+		EntrantBuffer buffer = ENTRANT_BUFFERS.get();
+		int count = drainEntrants(buffer);
+		for(int i = 0; i < count; i++)
+		{
+			Agent agent = buffer.agents[i];
+			buffer.agents[i] = null;
+			if(others == NO_AGENTS && !(agent instanceof Human))
+			{
+				others = new AgentList();
+			}
+			binOf(agent).add(agent);
+			agent.location = this;
+			Disease.State state = agent.getState();
+			tally[state.ordinal()]++;
+			if(!agent.placed)
+			{
+				//first time this agent is anywhere in the world
+				agent.placed = true;
+				world.addTally(state, 1);
+				agent.onPlaced();
+			}
 		}
-		entrantList.clear();
 	}
+	/**
+	 * move the agents waiting to enter this location to a list instead, for agents that
+	 * are leaving for a location another world owns
+	 * @param into the list
+	 */
+	void takeEntrants(List<Agent> into)
+	{
+		EntrantBuffer buffer = ENTRANT_BUFFERS.get();
+		int count = drainEntrants(buffer);
+		for(int i = 0; i < count; i++)
+		{
+			into.add(buffer.agents[i]);
+			buffer.agents[i] = null;
+		}
+	}
+	
 	/**
 	 * call when it's time for agents leaving this location to be processed
 	 * then clear the exitant list
@@ -85,10 +253,134 @@ public class Environment {
 	public void doExits()
 	{
 		//purge exitantList
-		for(Agent agent : exitantList)
+		for(int i = 0; i < exitantList.size(); i++)
+		{
+			Agent agent = exitantList.get(i);
+			if(binOf(agent).remove(agent))
+			{
+				if(agent.location == this)
+				{
+					agent.location = null;
+				}
+				Disease.State state = agent.getState();
+				tally[state.ordinal()]--;
+				if(agent.dead)
+				{
+					world.addTally(state, -1);
+					if(agent instanceof Mosquito)
+					{
+						//gone for good, its next life starts from the pool
+						world.getMosquitoPool().release((Mosquito)agent);
+					}
+				}
+			}
+		}
+		exitantList.clear();
+	}
+	
+	/**
+	 * @param agent an agent
+	 * @return the bin it is kept in while it is here
+	 */
+	private AgentList binOf(Agent agent)
+	{
+		return agent instanceof Human ? humans : others;
+	}
+	
+	/**
+	 * @return true if a tick would do nothing here: no inhabitants, no entrants and no mosquito compartments
+	 */
+	boolean isIdle()
+	{
+		return getPopulation() == 0 && entrants == null && mosquitoes == null;
+	}
+	
+	/**
+	 * @return the age of the reserve mosquito, without making it if it doesn't exist yet
+	 */
+	double getReserveAge()
+	{
+		return temp_mosquito == null ? world.initialReserveAge(row, column) : temp_mosquito.age;
+	}
+	
+	/**
+	 * @param age the new age of the reserve mosquito
+	 */
+	void setReserveAge(double age)
+	{
+		if(temp_mosquito != null || age != world.initialReserveAge(row, column))
+		{
+			getReserveMosquito().age = age;
+		}
+	}
+	
+	/**
+	 * @return the mosquito that bites humans here until it catches a disease
+	 */
+	Mosquito getReserveMosquito()
+	{
+		if(temp_mosquito == null)
+		{
+			temp_mosquito = world.getMosquitoPool().acquire(row, column, world.initialReserveAge(row, column));
+		}
+		return temp_mosquito;
+	}
+	
+	/**
+	 * switch between a reserve Mosquito agent and mosquito compartments filled according
+	 * to this location's mosquito density. Mosquito agents already here carry on as agents
+	 * @param enable true to keep mosquitoes as counts
+	 * @param rng the random number stream to fill the compartments from
+	 */
+	void useMosquitoCompartments(boolean enable, SimRandom rng)
+	{
+		if(enable && mosquitoes == null)
+		{
+			mosquitoes = new MosquitoCompartments(mosquitoDensity, rng);
+		}else if(!enable && mosquitoes != null)
+		{
+			world.addTally(Disease.State.INFECTED, -mosquitoes.getInfected());
+			mosquitoes = null;
+		}
+	}
+	
+	/**
+	 * @return this location's mosquito compartments, or null if mosquitoes are agents
+	 */
+	MosquitoCompartments getMosquitoCompartments()
+	{
+		return mosquitoes;
+	}
+	
+	/**
+	 * ask every inhabitant to schedule its pending recoveries and deaths again
+	 */
+	void scheduleEvents()
+	{
+		for(AgentList bin : new AgentList[]{humans, others})
+		{
+			for(int i = 0; i < bin.size(); i++)
+			{
+				bin.get(i).scheduleEvents();
+			}
+		}
+	}
+	
+	/**
+	 * drop all agents from this location, including any pending entrances and exits
+	 */
+	void clearInhabitants()
+	{
+		for(AgentList bin : new AgentList[]{humans, others})
 		{
-			inhabitants.remove(agent);
+			for(int i = 0; i < bin.size(); i++)
+			{
+				bin.get(i).location = null;
+			}
+			bin.clear();
 		}
+		Arrays.fill(tally, 0);
+		takeEntrants(new ArrayList<Agent>());
 		exitantList.clear();
 	}
 	
@@ -98,30 +390,198 @@ public class Environment {
 	 */
 	public void tick(double deltaTime)
 	{
-		
-		//the mysterious for-each loop read: "for each agent in inhabitants"
-		Vector<Agent> newMosquitoes = new Vector<Agent>();
-		for(Agent agent : inhabitants)
+		world.useLocationStream(row, column);
+		if(mosquitoes != null)
+		{
+			tickMosquitoCompartments(deltaTime, World.getStream());
+		}
+		boolean batched = world.usesBatchedBites();
+		if(batched)
+		{
+			SimRandom rng = World.getStream();
+			if(mosquitoes == null)
+			{
+				reserveBites(rng);
+			}
+			mosquitoAgentBites(rng);
+		}
+		for(int i = 0; i < humans.size(); i++)
 		{
-			if(agent instanceof Human)
+			Human victim = (Human)humans.get(i);
+			if(victim.dead)
+			{
+				//died at the start of the tick and leaves with this tick's exits
+				continue;
+			}
+			if(mosquitoes == null && !batched)
 			{
-				Human victim = (Human)agent;
 				//TODO: calibrate rate here - what is a reasonable bite rate?
 				if(World.randNum() < Mosquito.bite_rate)
 				{
-					victim.recieveBite(temp_mosquito);
+					victim.recieveBite(getReserveMosquito());
 					if(temp_mosquito.isInfected())
 					{
 						this.enter(temp_mosquito);
 						//have another in reserve
-						temp_mosquito = new Mosquito(row,column);
+						temp_mosquito = world.getMosquitoPool().acquire(row, column);
 					}
 				}
 			}
-			agent.tick(deltaTime);
+			victim.tick(deltaTime);
+		}
+		for(int i = 0; i < others.size(); i++)
+		{
+			Agent agent = others.get(i);
+			if(!agent.dead)
+			{
+				agent.tick(deltaTime);
+			}
+		}
+	}
+	
+	/**
+	 * @param n the number of humans or mosquitoes that may bite or be bitten
+	 * @param rng this location's random number stream
+	 * @return how many of them do, each with probability Mosquito.bite_rate
+	 */
+	private static int sampleBites(int n, SimRandom rng)
+	{
+		if(n < NO_BITES.length)
+		{
+			return BinomialSampler.sample(n, Mosquito.bite_rate, NO_BITES[n], rng);
+		}
+		return BinomialSampler.sample(n, Mosquito.bite_rate, rng);
+	}
+	
+	/**
+	 * the reserve mosquito's bites with batched bites: the number of humans bitten is
+	 * binomial, each with probability Mosquito.bite_rate, and a partial shuffle of the
+	 * humans picks that many distinct ones
+	 * @param rng this location's random number stream
+	 */
+	private void reserveBites(SimRandom rng)
+	{
+		int n = humans.size();
+		int bites = sampleBites(n, rng);
+		for(int i = 0; i < bites; i++)
+		{
+			humans.swap(i, i + (int)(rng.nextDouble() * (n - i)));
+			Human victim = (Human)humans.get(i);
+			if(victim.dead)
+			{
+				//left at the start of the tick, the unbatched loop skips it too
+				continue;
+			}
+			victim.recieveBite(getReserveMosquito());
+			if(temp_mosquito.isInfected())
+			{
+				this.enter(temp_mosquito);
+				//have another in reserve
+				temp_mosquito = world.getMosquitoPool().acquire(row, column);
+			}
 		}
-		
 	}
+	
+	/**
+	 * the mosquito agents' bites with batched bites: if there are humans here the number of
+	 * live mosquitoes that bite is binomial with probability Mosquito.bite_rate, each bites
+	 * a random human, and the number of biters killed while feeding is binomial too
+	 * @param rng this location's random number stream
+	 */
+	private void mosquitoAgentBites(SimRandom rng)
+	{
+		if(humans.isEmpty())
+		{
+			return;
+		}
+		//the live mosquitoes to the front, so the shuffles only pick from them
+		int n = 0;
+		for(int i = 0; i < others.size(); i++)
+		{
+			Agent agent = others.get(i);
+			if(agent instanceof Mosquito && !agent.dead)
+			{
+				if(i != n)
+				{
+					others.swap(n, i);
+				}
+				n++;
+			}
+		}
+		int bites = sampleBites(n, rng);
+		for(int i = 0; i < bites; i++)
+		{
+			others.swap(i, i + (int)(rng.nextDouble() * (n - i)));
+			randomHuman().recieveBite((Mosquito)others.get(i));
+		}
+		int killed = BinomialSampler.sample(bites, 1 - Mosquito.encounter_survival_rate, rng);
+		for(int i = 0; i < killed; i++)
+		{
+			others.swap(i, i + (int)(rng.nextDouble() * (bites - i)));
+			((Mosquito)others.get(i)).killedFeeding();
+		}
+	}
+	
+	/**
+	 * age the mosquito compartments and sample this tick's bites from the counts: each
+	 * mosquito bites a random human with probability Mosquito.bite_rate, as a Mosquito agent would.
+	 * Susceptible mosquitoes that bite an infected human become infected, infected ones
+	 * infect susceptible humans and may be killed while feeding
+	 * @param deltaTime time that the simulation has advanced
+	 * @param rng this location's random number stream
+	 */
+	private void tickMosquitoCompartments(double deltaTime, SimRandom rng)
+	{
+		int change = -mosquitoes.age(deltaTime, rng);
+		int susceptibleHumans = 0;
+		int infectedHumans = 0;
+		String humanStrain = null;
+		for(int i = 0; i < humans.size(); i++)
+		{
+			Agent agent = humans.get(i);
+			if(agent.isSusceptible())
+			{
+				susceptibleHumans++;
+			}else if(agent.isInfected())
+			{
+				infectedHumans++;
+				if(humanStrain == null) humanStrain = agent.getStrain();
+			}
+		}
+		if(humans.size() > 0)
+		{
+			int infectedBites = BinomialSampler.sample(mosquitoes.getInfected(), Mosquito.bite_rate, rng);
+			int susceptibleBites = BinomialSampler.sample(mosquitoes.getSusceptible(), Mosquito.bite_rate, rng);
+			//bites by infected mosquitoes that land on susceptible humans
+			int infectious = BinomialSampler.sample(infectedBites, susceptibleHumans / (double)humans.size(), rng);
+			if(infectious > 0)
+			{
+				//each of the bites picks one of the susceptible humans, some may be picked twice
+				double hit = 1 - Math.pow(1 - 1.0 / susceptibleHumans, infectious);
+				String strain = mosquitoes.getStrain();
+				for(int i = 0; i < humans.size(); i++)
+				{
+					Agent agent = humans.get(i);
+					if(agent.isSusceptible() && rng.nextDouble() < hit)
+					{
+						agent.recieveDisease(strain);
+					}
+				}
+			}
+			change -= mosquitoes.killInfected(BinomialSampler.sample(infectedBites, 1 - Mosquito.encounter_survival_rate, rng), rng);
+			//bites by susceptible mosquitoes that land on infected humans
+			int infecting = BinomialSampler.sample(susceptibleBites, infectedHumans / (double)humans.size(), rng);
+			if(infecting > 0)
+			{
+				change += mosquitoes.infect(infecting, humanStrain, rng);
+			}
+		}
+		if(change != 0)
+		{
+			world.addTally(Disease.State.INFECTED, change);
+		}
+	}
+	
 	/**
 	 * @return this agent's row
 	 */
@@ -138,30 +598,62 @@ public class Environment {
 		return column;
 	}
 	
+	/**
+	 * @return the number of agents currently at this location
+	 */
+	public int getPopulation()
+	{
+		return humans.size() + others.size();
+	}
+	
+	/**
+	 * @return the number of humans currently at this location
+	 */
+	public int countHumans()
+	{
+		return humans.size();
+	}
+	
+	/**
+	 * pick one of the humans here, each as likely as any other, with one draw from the calling thread's stream
+	 * @return the human, or null if there are none
+	 */
+	public Human randomHuman()
+	{
+		if(humans.isEmpty())
+		{
+			return null;
+		}
+		return (Human)humans.get((int)(World.randNum() * humans.size()));
+	}
+	
 	/**
 	 * check to see whether this location contains any Agents of a certain type
 	 * @param type the type of agent to find
 	 * @return true if this location has an Agent of the given type
 	 */
 	public boolean hasAny(String type) {
-
-		for(Agent agent : inhabitants)
+		if(type.equals(Human.type)) return !humans.isEmpty();
+		for(int i = 0; i < others.size(); i++)
 		{
-			if(agent.getType() == type) return true;
+			if(others.get(i).getType().equals(type)) return true;
 		}
 		return false;
 	}
 	/**
-	 * returns a vector of Agents that match the given type
+	 * returns a vector of Agents that match the given type. This copies them, use
+	 * countHumans and randomHuman where that isn't needed
 	 * @param type the type of Agents to return in the Vector
 	 * @return a Vector of Agents of the given type
 	 */
 	public Vector<Agent> getAll(String type)
 	{
 		Vector<Agent> temp = new Vector<Agent>();
-		for(Agent agent : inhabitants)
+		AgentList bin = type.equals(Human.type) ? humans : others;
+		for(int i = 0; i < bin.size(); i++)
 		{
-			if(agent.getType() == type)
+			Agent agent = bin.get(i);
+			if(agent.getType().equals(type))
 			{
 				temp.add(agent);
 			}
@@ -169,50 +661,52 @@ public class Environment {
 		return temp;
 	}
 	/**
-	 * @return the number of infected agents at this location
+	 * called by an inhabitant whose state changed, to move it to its new tally
+	 * @param before the agent's old state
+	 * @param after the agent's new state
+	 */
+	void changeTally(Disease.State before, Disease.State after)
+	{
+		tally[before.ordinal()]--;
+		tally[after.ordinal()]++;
+		world.addTally(before, -1);
+		world.addTally(after, 1);
+	}
+	
+	/**
+	 * @return the number of infected agents at this location, including infected mosquitoes kept as counts
 	 */
 	public int countInfections()
 	{
-		int count = 0;
-		for(Agent agent : inhabitants)
-		{
-			if(agent.isInfected() == true)
-			{
-				count++;
-			}
-		}
-		return count;
+		int infected = tally[Disease.State.INFECTED.ordinal()];
+		return mosquitoes == null ? infected : infected + mosquitoes.getInfected();
 	}
 	/**
 	 * @return count the number of susceptible agents at this location
 	 */
 	public int countSusceptible()
 	{
-		int count = 0;
-		for(Agent agent : inhabitants)
-		{
-			if(agent.isSusceptible())
-			{
-				count++;
-			}
-		}
-		return count;
+		return tally[Disease.State.SUSCEPTIBLE.ordinal()];
 	}
 	/**
 	 * @return the number of recovered agents
 	 */
 	public int countRecovered()
 	{
-		int count = 0;
-		for(Agent agent : inhabitants)
-		{
-			if(agent.isRecovered() )
-			{
-				count++;
-			}
-		}
-		return count;
+		return tally[Disease.State.RECOVERED.ordinal()];
 	}
+	/**
+	 * @return INFECTED if anyone here is infected, otherwise SUSCEPTIBLE if anyone is
+	 * susceptible, otherwise RECOVERED if anyone has recovered, NONE if the location is empty
+	 */
+	public Disease.State getDisplayState()
+	{
+		if(countInfections() > 0) return Disease.State.INFECTED;
+		if(countSusceptible() > 0) return Disease.State.SUSCEPTIBLE;
+		if(countRecovered() > 0) return Disease.State.RECOVERED;
+		return Disease.State.NONE;
+	}
+	
 	/**
 	 * draw this lattice location within the given render area on the provided graphics context
 	 * @param g the graphics context
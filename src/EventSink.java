@@ -0,0 +1,47 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+
+/**
+ * receives the events that agents used to print to System.out.
+ * Implementations must be safe to call from several tick threads at once.
+ */
+public interface EventSink {
+	/**
+	 * the kinds of events agents report
+	 */
+	public enum Kind{INFECTED, RECOVERED, DIED, KILLED_FEEDING};
+
+	/**
+	 * record one event
+	 * @param kind what happened
+	 * @param tick the tick during which it happened
+	 * @param uid the agent's UID
+	 * @param agentType the agent's type, e.g. Human.type
+	 * @param strain the strain involved, or an empty string
+	 * @param row the agent's row
+	 * @param col the agent's column
+	 */
+	public void record(Kind kind, long tick, long uid, String agentType, String strain, int row, int col);
+
+	/**
+	 * write out anything still buffered and release the sink's resources
+	 */
+	public void close();
+}
@@ -0,0 +1,165 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.Arrays;
+
+/**
+ * an AgentTable that keeps each field of the humans and of the mosquitoes in its own array
+ */
+class HeapAgentTable extends AgentTable {
+	//humans
+	private int humanCount = 0;
+	private long[] humanUID = new long[16];
+	private int[] humanRow = new int[16];
+	private int[] humanCol = new int[16];
+	private int[] homeRow = new int[16];
+	private int[] homeCol = new int[16];
+	private byte[] humanState = new byte[16];
+	private int[] humanStrain = new int[16];
+	private double[] humanInfectedAt = new double[16];
+	private int[] humanOrder = new int[16];
+
+	//mosquitoes
+	private int mosquitoCount = 0;
+	private long[] mosquitoUID = new long[16];
+	private int[] mosquitoRow = new int[16];
+	private int[] mosquitoCol = new int[16];
+	private double[] mosquitoAge = new double[16];
+	private byte[] mosquitoState = new byte[16];
+	private int[] mosquitoStrain = new int[16];
+	private int[] mosquitoOrder = new int[16];
+
+	//age of each location's reserve mosquito, see Environment.temp_mosquito
+	private final double[] reserveAge;
+
+	/**
+	 * @param locations the number of locations in the lattice
+	 */
+	HeapAgentTable(int locations)
+	{
+		reserveAge = new double[locations];
+	}
+
+	@Override
+	int getHumanCount()
+	{
+		return humanCount;
+	}
+
+	@Override
+	int addHuman(long uid, int row, int col, int home_row, int home_col)
+	{
+		if(humanCount == humanRow.length)
+		{
+			int capacity = humanCount * 2;
+			humanUID = Arrays.copyOf(humanUID, capacity);
+			humanRow = Arrays.copyOf(humanRow, capacity);
+			humanCol = Arrays.copyOf(humanCol, capacity);
+			homeRow = Arrays.copyOf(homeRow, capacity);
+			homeCol = Arrays.copyOf(homeCol, capacity);
+			humanState = Arrays.copyOf(humanState, capacity);
+			humanStrain = Arrays.copyOf(humanStrain, capacity);
+			humanInfectedAt = Arrays.copyOf(humanInfectedAt, capacity);
+			humanOrder = Arrays.copyOf(humanOrder, capacity);
+		}
+		int h = humanCount++;
+		humanUID[h] = uid;
+		humanRow[h] = row;
+		humanCol[h] = col;
+		homeRow[h] = home_row;
+		homeCol[h] = home_col;
+		humanState[h] = ArrayEngine.SUSCEPTIBLE;
+		humanStrain[h] = -1;
+		return h;
+	}
+
+	@Override long getHumanUID(int h) { return humanUID[h]; }
+	@Override int getHumanRow(int h) { return humanRow[h]; }
+	@Override int getHumanColumn(int h) { return humanCol[h]; }
+	@Override void setHumanPosition(int h, int row, int col) { humanRow[h] = row; humanCol[h] = col; }
+	@Override int getHomeRow(int h) { return homeRow[h]; }
+	@Override int getHomeColumn(int h) { return homeCol[h]; }
+	@Override byte getHumanState(int h) { return humanState[h]; }
+	@Override void setHumanState(int h, byte state) { humanState[h] = state; }
+	@Override int getHumanStrain(int h) { return humanStrain[h]; }
+	@Override void setHumanStrain(int h, int strain) { humanStrain[h] = strain; }
+	@Override double getHumanInfectedAt(int h) { return humanInfectedAt[h]; }
+	@Override void setHumanInfectedAt(int h, double time) { humanInfectedAt[h] = time; }
+	@Override int getHumanOrder(int i) { return humanOrder[i]; }
+	@Override void setHumanOrder(int i, int h) { humanOrder[i] = h; }
+
+	@Override
+	int getMosquitoCount()
+	{
+		return mosquitoCount;
+	}
+
+	@Override
+	int addMosquito(long uid, int row, int col, double age)
+	{
+		if(mosquitoCount == mosquitoRow.length)
+		{
+			int capacity = mosquitoCount * 2;
+			mosquitoUID = Arrays.copyOf(mosquitoUID, capacity);
+			mosquitoRow = Arrays.copyOf(mosquitoRow, capacity);
+			mosquitoCol = Arrays.copyOf(mosquitoCol, capacity);
+			mosquitoAge = Arrays.copyOf(mosquitoAge, capacity);
+			mosquitoState = Arrays.copyOf(mosquitoState, capacity);
+			mosquitoStrain = Arrays.copyOf(mosquitoStrain, capacity);
+			//copied, not reallocated: mosquitoes are born while the tick is walking mosquitoOrder
+			mosquitoOrder = Arrays.copyOf(mosquitoOrder, capacity);
+		}
+		int m = mosquitoCount++;
+		mosquitoUID[m] = uid;
+		mosquitoRow[m] = row;
+		mosquitoCol[m] = col;
+		mosquitoAge[m] = age;
+		mosquitoState[m] = ArrayEngine.SUSCEPTIBLE;
+		mosquitoStrain[m] = -1;
+		return m;
+	}
+
+	@Override
+	void removeMosquito(int m)
+	{
+		int last = --mosquitoCount;
+		mosquitoUID[m] = mosquitoUID[last];
+		mosquitoRow[m] = mosquitoRow[last];
+		mosquitoCol[m] = mosquitoCol[last];
+		mosquitoAge[m] = mosquitoAge[last];
+		mosquitoState[m] = mosquitoState[last];
+		mosquitoStrain[m] = mosquitoStrain[last];
+	}
+
+	@Override long getMosquitoUID(int m) { return mosquitoUID[m]; }
+	@Override int getMosquitoRow(int m) { return mosquitoRow[m]; }
+	@Override int getMosquitoColumn(int m) { return mosquitoCol[m]; }
+	@Override void setMosquitoPosition(int m, int row, int col) { mosquitoRow[m] = row; mosquitoCol[m] = col; }
+	@Override double getMosquitoAge(int m) { return mosquitoAge[m]; }
+	@Override void setMosquitoAge(int m, double age) { mosquitoAge[m] = age; }
+	@Override byte getMosquitoState(int m) { return mosquitoState[m]; }
+	@Override void setMosquitoState(int m, byte state) { mosquitoState[m] = state; }
+	@Override int getMosquitoStrain(int m) { return mosquitoStrain[m]; }
+	@Override void setMosquitoStrain(int m, int strain) { mosquitoStrain[m] = strain; }
+	@Override int getMosquitoOrder(int i) { return mosquitoOrder[i]; }
+	@Override void setMosquitoOrder(int i, int m) { mosquitoOrder[i] = m; }
+
+	@Override double getReserveAge(int c) { return reserveAge[c]; }
+	@Override void setReserveAge(int c, double age) { reserveAge[c] = age; }
+}
@@ -1,6 +1,3 @@
-import java.util.Calendar;
-
-
 /*
  *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
  *	Copyright (C) 2012 Marek Laskowski				*
@@ -44,6 +41,18 @@ public class Human extends Agent {
 		this.homeCol = homeCol;
 		
 	}
+	
+	/**
+	 * a constructor for a human that keeps the UID it had in another world
+	 * @param homeRow the human's home row
+	 * @param homeCol the human's home column
+	 * @param uid the human's UID
+	 */
+	Human(int homeRow, int homeCol, long uid){
+		super(type, homeRow, homeCol, uid);
+		this.homeRow = homeRow;
+		this.homeCol = homeCol;
+	}
 
 	/**
 	 * get bitten by a mosquito, bitee will receive a disease if the mosquito is infected,
@@ -54,11 +63,11 @@ public class Human extends Agent {
 	{
 		if(biter.isInfected())
 		{
-			recieveDisease(biter.getStrain());
+			recieveDisease(biter.getStrainId());
 		}
 		
 		if(isInfected()){
-			biter.recieveDisease(getStrain());
+			biter.recieveDisease(getStrainId());
 		}
 	}
 	
@@ -69,20 +78,10 @@ public class Human extends Agent {
 	@Override
 	public void tick(double deltaTime){
 		super.tick(deltaTime);
-		//check to see if recovered yet
-		for(Disease disease : infections)
-		{
-			if(disease.getState() == Disease.State.INFECTED && disease.getTimeSinceInfection() > infectious_period)
-			{
-				disease.setState(Disease.State.RECOVERED);
-				System.out.println("agent" + getUID() + " " + getType() + " recovered");
-
-			}
-		}
 		
 		//basic behavior: half the time levy flight, half the time return home
 		//at night stay home
-		if(World.getTime().get(Calendar.HOUR_OF_DAY) < 8)
+		if(world.getClock().getHourOfDay() < 8)
 		{
 				//in a different spot so go home
 				moveTo(homeRow, homeCol);
@@ -94,10 +93,56 @@ public class Human extends Agent {
 				moveTo(homeRow, homeCol);
 			}else{
 				//half the time levy fight
-				moveTo(levyFlight(getRow()),levyFlight(getColumn()));
+				levyMove();
 			}
 		}
 		
 	}
 	
+	/**
+	 * schedule the recovery from a new infection for the end of the tick the infectious
+	 * period runs out in, so the human can still be bitten and pass the infection on in that tick
+	 * @param disease the new infection
+	 */
+	@Override
+	void infectionStarted(Disease disease)
+	{
+		if(world != null)
+		{
+			world.scheduleAfterBites(this, world.tickEndingAfter(disease.getInfectedAt() + infectious_period));
+		}
+	}
+	
+	/**
+	 * recover from every infection that is older than the infectious period by the end of this tick
+	 */
+	@Override
+	void onScheduledEvent()
+	{
+		if(dead)
+		{
+			//moved to another world, which recovers it there
+			return;
+		}
+		for(Disease disease : infections)
+		{
+			if(disease.getState() == Disease.State.INFECTED && disease.getTimeSinceInfection() + world.getTimeStep() > infectious_period)
+			{
+				setDiseaseState(disease, Disease.State.RECOVERED);
+				report(EventSink.Kind.RECOVERED, disease.getStrain());
+			}
+		}
+	}
+	
+	@Override
+	void scheduleEvents()
+	{
+		for(Disease disease : infections)
+		{
+			if(disease.getState() == Disease.State.INFECTED)
+			{
+				infectionStarted(disease);
+			}
+		}
+	}
 }
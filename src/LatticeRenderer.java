@@ -0,0 +1,207 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * draws a lattice as one pixel per location in an int[] backed BufferedImage, which is
+ * then scaled onto the screen in a single drawImage. The colors come from a grid with one
+ * byte per location, the ordinal of the Disease.State the location is shown as (NONE when
+ * empty), see World.copyCellStates. Keeps a zoom and a center so the view can be zoomed
+ * into and panned around.
+ */
+public class LatticeRenderer {
+	//indexed by Disease.State ordinal, the same colors Environment.render uses
+	private static final int[] PALETTE = new int[Disease.State.values().length];
+	static
+	{
+		PALETTE[Disease.State.NONE.ordinal()] = Color.white.getRGB();
+		PALETTE[Disease.State.SUSCEPTIBLE.ordinal()] = Color.green.getRGB();
+		PALETTE[Disease.State.INFECTED.ordinal()] = Color.red.getRGB();
+		PALETTE[Disease.State.RECOVERED.ordinal()] = Color.blue.getRGB();
+	}
+	public static final double MAX_ZOOM = 256;
+
+	private BufferedImage image;
+	private int[] pixels;
+	private byte[] states;
+	private int rows;
+	private int cols;
+	//1 shows the whole lattice, 2 half of its width and height, and so on
+	private double zoom = 1;
+	//the lattice coordinates at the middle of the view, in cells
+	private double centerX;
+	private double centerY;
+
+	/**
+	 * copy a world's location states into the image
+	 * @param world the world
+	 */
+	public void update(World world)
+	{
+		resize(world.getRows(), world.getColumns());
+		world.copyCellStates(states);
+		update(states, rows, cols);
+	}
+
+	/**
+	 * color the image from a grid of location states
+	 * @param cellStates Disease.State ordinals, row by row
+	 * @param rows the number of rows in the grid
+	 * @param cols the number of columns in the grid
+	 */
+	public void update(byte[] cellStates, int rows, int cols)
+	{
+		resize(rows, cols);
+		int n = rows * cols;
+		for(int i = 0; i < n; i++)
+		{
+			pixels[i] = PALETTE[cellStates[i]];
+		}
+	}
+
+	private void resize(int rows, int cols)
+	{
+		if(image != null && this.rows == rows && this.cols == cols)
+		{
+			return;
+		}
+		this.rows = rows;
+		this.cols = cols;
+		image = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		states = new byte[rows * cols];
+		zoom = 1;
+		centerX = cols / 2.0;
+		centerY = rows / 2.0;
+	}
+
+	/**
+	 * draw the visible part of the lattice stretched over the render area
+	 * @param g the graphics context
+	 * @param renderArea where to draw
+	 */
+	public void paint(Graphics g, Rectangle renderArea)
+	{
+		if(image == null)
+		{
+			return;
+		}
+		double w = cols / zoom;
+		double h = rows / zoom;
+		int sx1 = (int)Math.floor(centerX - w / 2);
+		int sy1 = (int)Math.floor(centerY - h / 2);
+		int sx2 = (int)Math.ceil(centerX + w / 2);
+		int sy2 = (int)Math.ceil(centerY + h / 2);
+		//whole cells only, so the source rectangle can be a little bigger than the view
+		double scaleX = renderArea.width / w;
+		double scaleY = renderArea.height / h;
+		int dx1 = renderArea.x + (int)Math.round((sx1 - (centerX - w / 2)) * scaleX);
+		int dy1 = renderArea.y + (int)Math.round((sy1 - (centerY - h / 2)) * scaleY);
+		int dx2 = dx1 + (int)Math.round((sx2 - sx1) * scaleX);
+		int dy2 = dy1 + (int)Math.round((sy2 - sy1) * scaleY);
+		Graphics clipped = g.create(renderArea.x, renderArea.y, renderArea.width, renderArea.height);
+		clipped.translate(-renderArea.x, -renderArea.y);
+		clipped.drawImage(image, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+		clipped.dispose();
+	}
+
+	/**
+	 * zoom in or out, keeping the location under a point of the render area where it is
+	 * @param factor how much to zoom in, below 1 zooms out
+	 * @param x the point's x coordinate within the render area
+	 * @param y the point's y coordinate within the render area
+	 * @param renderArea the area paint draws into
+	 */
+	public void zoom(double factor, int x, int y, Rectangle renderArea)
+	{
+		double cellX = toColumn(x, renderArea);
+		double cellY = toRow(y, renderArea);
+		double newZoom = Math.max(1, Math.min(MAX_ZOOM, zoom * factor));
+		//the point stays at the same fraction of the view
+		centerX = cellX + (centerX - cellX) * zoom / newZoom;
+		centerY = cellY + (centerY - cellY) * zoom / newZoom;
+		zoom = newZoom;
+		clampCenter();
+	}
+
+	/**
+	 * move the view
+	 * @param dx how far to drag the lattice right, in pixels of the render area
+	 * @param dy how far to drag the lattice down, in pixels of the render area
+	 * @param renderArea the area paint draws into
+	 */
+	public void pan(int dx, int dy, Rectangle renderArea)
+	{
+		centerX -= dx * cols / zoom / renderArea.width;
+		centerY -= dy * rows / zoom / renderArea.height;
+		clampCenter();
+	}
+
+	/**
+	 * keep the view within the lattice
+	 */
+	private void clampCenter()
+	{
+		double halfW = cols / zoom / 2;
+		double halfH = rows / zoom / 2;
+		centerX = Math.max(halfW, Math.min(cols - halfW, centerX));
+		centerY = Math.max(halfH, Math.min(rows - halfH, centerY));
+	}
+
+	/**
+	 * @param x an x coordinate within the render area
+	 * @param renderArea the area paint draws into
+	 * @return the lattice column, with a fraction, drawn at x
+	 */
+	public double toColumn(int x, Rectangle renderArea)
+	{
+		return centerX + ((x - renderArea.x) / (double)renderArea.width - 0.5) * cols / zoom;
+	}
+
+	/**
+	 * @param y a y coordinate within the render area
+	 * @param renderArea the area paint draws into
+	 * @return the lattice row, with a fraction, drawn at y
+	 */
+	public double toRow(int y, Rectangle renderArea)
+	{
+		return centerY + ((y - renderArea.y) / (double)renderArea.height - 0.5) * rows / zoom;
+	}
+
+	/**
+	 * @return the current zoom, 1 shows the whole lattice
+	 */
+	public double getZoom()
+	{
+		return zoom;
+	}
+
+	/**
+	 * @return the image, one pixel per location
+	 */
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+}
@@ -0,0 +1,77 @@
+import static org.junit.Assert.*;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+
+/**
+ * This class tests the LatticeRenderer class
+ */
+public class LatticeRendererTest {
+
+	/**
+	 * each location becomes one pixel in its state's color, and paint stretches them over the area
+	 */
+	@Test
+	public void testColors(){
+		byte[] states = {(byte)Disease.State.NONE.ordinal(), (byte)Disease.State.SUSCEPTIBLE.ordinal(),
+				(byte)Disease.State.INFECTED.ordinal(), (byte)Disease.State.RECOVERED.ordinal()};
+		LatticeRenderer renderer = new LatticeRenderer();
+		renderer.update(states, 2, 2);
+		BufferedImage screen = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		Graphics g = screen.getGraphics();
+		renderer.paint(g, new Rectangle(0, 0, 100, 100));
+		g.dispose();
+		assertEquals(Color.white.getRGB(), screen.getRGB(10, 10));
+		assertEquals(Color.green.getRGB(), screen.getRGB(90, 10));
+		assertEquals(Color.red.getRGB(), screen.getRGB(10, 90));
+		assertEquals(Color.blue.getRGB(), screen.getRGB(90, 90));
+	}
+
+	/**
+	 * zooming keeps the location under the pointer in place, panning stays inside the lattice
+	 */
+	@Test
+	public void testZoomAndPan(){
+		LatticeRenderer renderer = new LatticeRenderer();
+		renderer.update(new byte[100 * 200], 100, 200);
+		Rectangle area = new Rectangle(0, 0, 400, 200);
+		double column = renderer.toColumn(100, area);
+		double row = renderer.toRow(150, area);
+		renderer.zoom(4, 100, 150, area);
+		assertEquals(4, renderer.getZoom(), 0);
+		assertEquals(column, renderer.toColumn(100, area), 1e-9);
+		assertEquals(row, renderer.toRow(150, area), 1e-9);
+		renderer.pan(100000, 100000, area);
+		assertEquals(0, renderer.toColumn(0, area), 1e-9);
+		assertEquals(0, renderer.toRow(0, area), 1e-9);
+		renderer.zoom(0.001, 0, 0, area);
+		assertEquals(1, renderer.getZoom(), 0);
+	}
+
+	/**
+	 * the renderer shows a world's locations as Environment.getDisplayState says
+	 */
+	@Test
+	public void testWorld(){
+		World world = new World(20, 30, 3600.0, 0.5, 2, 5);
+		world.setEventSink(new NullEventSink());
+		world.introduceInfection("ACGT");
+		world.tick();
+		LatticeRenderer renderer = new LatticeRenderer();
+		renderer.update(world);
+		BufferedImage image = renderer.getImage();
+		assertEquals(30, image.getWidth());
+		assertEquals(20, image.getHeight());
+		for(int i = 0; i < 20; i++){
+			for(int j = 0; j < 30; j++){
+				Disease.State state = world.getLocation(i, j).getDisplayState();
+				Color expected = state == Disease.State.INFECTED ? Color.red
+						: state == Disease.State.SUSCEPTIBLE ? Color.green
+						: state == Disease.State.RECOVERED ? Color.blue : Color.white;
+				assertEquals(expected.getRGB(), image.getRGB(j, i));
+			}
+		}
+	}
+}
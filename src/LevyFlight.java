@@ -0,0 +1,219 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+
+/**
+ * samples levy flight jumps along one axis of the lattice from a single random long.
+ * The geometric flight has the same displacement distribution as the original
+ * Agent.levyFlight: a jump of k with probability 2^-(k+1), in either direction.
+ * The power law flight uses a precomputed alias table so any heavy tail exponent
+ * still costs one draw per jump.
+ * Targets that fall off the lattice are handled by the Border mode.
+ */
+public class LevyFlight {
+	/**
+	 * what happens to a jump that lands outside the lattice
+	 */
+	public enum Border{
+		/** stop at the edge, as World.getLocation does */
+		CLAMP,
+		/** bounce back off the edge */
+		REFLECT,
+		/** come back in on the opposite edge (a torus) */
+		WRAP
+	};
+
+	/**
+	 * the original flight, with jumps clamped at the edges of the lattice
+	 */
+	public static final LevyFlight DEFAULT = geometric(Border.CLAMP);
+
+	private final Border border;
+	//alias table for the power law flight, null for the geometric flight
+	private final double[] probability;
+	private final int[] alias;
+	private final double exponent;
+
+	private LevyFlight(Border border, double exponent, double[] probability, int[] alias)
+	{
+		this.border = border;
+		this.exponent = exponent;
+		this.probability = probability;
+		this.alias = alias;
+	}
+
+	/**
+	 * @param border what to do with jumps that land outside the lattice
+	 * @return a flight with the original geometric jump distribution
+	 */
+	public static LevyFlight geometric(Border border)
+	{
+		return new LevyFlight(border, 0, null, null);
+	}
+
+	/**
+	 * a heavy tailed flight: no jump half of the time, otherwise a jump of k in either
+	 * direction with probability proportional to k^-(1+exponent), up to maxJump
+	 * @param exponent the tail exponent, must be positive; smaller means longer jumps
+	 * @param maxJump the longest possible jump, usually the size of the lattice
+	 * @param border what to do with jumps that land outside the lattice
+	 * @return the flight
+	 */
+	public static LevyFlight powerLaw(double exponent, int maxJump, Border border)
+	{
+		if(!(exponent > 0) || maxJump < 1)
+		{
+			throw new IllegalArgumentException("need exponent > 0 and maxJump >= 1, got " + exponent + ", " + maxJump);
+		}
+		double[] weight = new double[maxJump + 1];
+		double tail = 0;
+		for(int k = 1; k <= maxJump; k++)
+		{
+			weight[k] = Math.pow(k, -(1 + exponent));
+			tail += weight[k];
+		}
+		weight[0] = 0.5;
+		for(int k = 1; k <= maxJump; k++)
+		{
+			weight[k] = 0.5 * weight[k] / tail;
+		}
+		double[] probability = new double[weight.length];
+		int[] alias = new int[weight.length];
+		buildAliasTable(weight, probability, alias);
+		return new LevyFlight(border, exponent, probability, alias);
+	}
+
+	/**
+	 * Vose's alias method: after this, picking a column i uniformly and keeping it
+	 * with chance probability[i] (otherwise taking alias[i]) samples from weight
+	 * @param weight probabilities that sum to one
+	 * @param probability filled with the chance of keeping each column
+	 * @param alias filled with the alternative for each column
+	 */
+	private static void buildAliasTable(double[] weight, double[] probability, int[] alias)
+	{
+		int n = weight.length;
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallCount = 0;
+		int largeCount = 0;
+		for(int i = 0; i < n; i++)
+		{
+			scaled[i] = weight[i] * n;
+			if(scaled[i] < 1) small[smallCount++] = i;
+			else large[largeCount++] = i;
+		}
+		while(smallCount > 0 && largeCount > 0)
+		{
+			int less = small[--smallCount];
+			int more = large[--largeCount];
+			probability[less] = scaled[less];
+			alias[less] = more;
+			scaled[more] = scaled[more] + scaled[less] - 1;
+			if(scaled[more] < 1) small[smallCount++] = more;
+			else large[largeCount++] = more;
+		}
+		//whatever is left is 1 up to rounding error
+		while(largeCount > 0)
+		{
+			int i = large[--largeCount];
+			probability[i] = 1;
+			alias[i] = i;
+		}
+		while(smallCount > 0)
+		{
+			int i = small[--smallCount];
+			probability[i] = 1;
+			alias[i] = i;
+		}
+	}
+
+	/**
+	 * @return the tail exponent, 0 for the geometric flight
+	 */
+	public double getExponent()
+	{
+		return exponent;
+	}
+
+	/**
+	 * @return what happens to jumps that land outside the lattice
+	 */
+	public Border getBorder()
+	{
+		return border;
+	}
+
+	/**
+	 * @param rng the random number stream to draw from
+	 * @return a signed jump length
+	 */
+	public int displacement(SimRandom rng)
+	{
+		long bits = rng.nextLong();
+		//bit 0 is the direction, the rest pick the length
+		int direction = (int)(bits & 1) * 2 - 1;
+		if(probability == null)
+		{
+			//each leading zero happens with chance 1/2, exactly like halving the test in the old loop
+			return direction * Long.numberOfLeadingZeros(bits | 1);
+		}
+		int column = (int)(((bits >>> 32) * probability.length) >>> 32);
+		double coin = ((bits >>> 1) & 0x7fffffffL) * 0x1.0p-31;
+		return direction * (coin < probability[column] ? column : alias[column]);
+	}
+
+	/**
+	 * jump along one axis of the lattice
+	 * @param position the agent's current row or column
+	 * @param size the number of rows or columns in the lattice
+	 * @param rng the random number stream to draw from
+	 * @return the new row or column, always inside the lattice
+	 */
+	public int jump(int position, int size, SimRandom rng)
+	{
+		return fold(position + displacement(rng), size);
+	}
+
+	/**
+	 * @param position a row or column that may be outside the lattice
+	 * @param size the number of rows or columns in the lattice
+	 * @return the position brought back inside the lattice according to the border mode
+	 */
+	int fold(int position, int size)
+	{
+		if(position >= 0 && position < size)
+		{
+			return position;
+		}
+		switch(border)
+		{
+		case WRAP:
+			return ((position % size) + size) % size;
+		case REFLECT:
+			if(size == 1) return 0;
+			int period = 2 * (size - 1);
+			int folded = ((position % period) + period) % period;
+			return folded < size ? folded : period - folded;
+		default:
+			return position < 0 ? 0 : size - 1;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class tests the jump distributions and border handling of LevyFlight
+ */
+public class LevyFlightTest {
+
+	/**
+	 * The single draw geometric flight should match the original loop: a jump of
+	 * length k with probability 2^-(k+1), equally often in either direction.
+	 */
+	@Test
+	public void testGeometricDistribution(){
+		SimRandom rng = new SimRandom(55);
+		int n = 400000;
+		int[] counts = new int[64];
+		int positive = 0;
+		int negative = 0;
+		for(int i=0; i<n; i++){
+			int d = LevyFlight.DEFAULT.displacement(rng);
+			counts[Math.abs(d)]++;
+			if(d > 0) positive++;
+			if(d < 0) negative++;
+		}
+		for(int k=0; k<8; k++){
+			double expected = n * Math.pow(0.5, k + 1);
+			assertEquals("jumps of " + k, expected, counts[k], 5 * Math.sqrt(expected));
+		}
+		assertEquals(positive, negative, 5 * Math.sqrt(n / 2.0));
+	}
+	
+	/**
+	 * The alias table should reproduce the power law weights.
+	 */
+	@Test
+	public void testPowerLawDistribution(){
+		double exponent = 1.5;
+		int maxJump = 50;
+		LevyFlight flight = LevyFlight.powerLaw(exponent, maxJump, LevyFlight.Border.CLAMP);
+		SimRandom rng = new SimRandom(7);
+		int n = 400000;
+		int[] counts = new int[maxJump + 1];
+		for(int i=0; i<n; i++){
+			int d = Math.abs(flight.displacement(rng));
+			assertTrue(d <= maxJump);
+			counts[d]++;
+		}
+		double norm = 0;
+		for(int k=1; k<=maxJump; k++){
+			norm += Math.pow(k, -(1 + exponent));
+		}
+		assertEquals(n * 0.5, counts[0], 5 * Math.sqrt(n * 0.25));
+		for(int k=1; k<=5; k++){
+			double expected = n * 0.5 * Math.pow(k, -(1 + exponent)) / norm;
+			assertEquals("jumps of " + k, expected, counts[k], 5 * Math.sqrt(expected));
+		}
+	}
+	
+	/**
+	 * Targets off the lattice are clamped, reflected or wrapped back inside.
+	 */
+	@Test
+	public void testBorders(){
+		LevyFlight clamp = LevyFlight.geometric(LevyFlight.Border.CLAMP);
+		LevyFlight reflect = LevyFlight.geometric(LevyFlight.Border.REFLECT);
+		LevyFlight wrap = LevyFlight.geometric(LevyFlight.Border.WRAP);
+		assertEquals(0, clamp.fold(-3, 10));
+		assertEquals(9, clamp.fold(12, 10));
+		assertEquals(3, reflect.fold(-3, 10));
+		assertEquals(7, reflect.fold(11, 10));
+		assertEquals(0, reflect.fold(7, 1));
+		assertEquals(7, wrap.fold(-3, 10));
+		assertEquals(2, wrap.fold(12, 10));
+		assertEquals(5, wrap.fold(5, 10));
+		SimRandom rng = new SimRandom(3);
+		for(int i=0; i<10000; i++){
+			int p = reflect.jump(i % 4, 4, rng);
+			assertTrue(p >= 0 && p < 4);
+		}
+	}
+}
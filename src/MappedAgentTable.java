@@ -0,0 +1,641 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * an AgentTable that keeps humans, mosquitoes and locations in fixed-width records in a
+ * memory-mapped file, so a population can be far larger than the Java heap and the garbage
+ * collector never sees it. The file is also a snapshot the run can be restarted from.
+ * <p>
+ * The file is a 4 KB header followed by segments of 2^20 records each. Every segment holds
+ * records of one kind; the header lists which kind each segment is, in file order, so the
+ * humans and the mosquitoes can both grow. The header also holds the engine's counters
+ * and the names of the strains, since StrainRegistry IDs are only fixed within a process.
+ * <p>
+ * The records are changed in place, so the file only holds a consistent state after
+ * checkpoint(); the first change after that, in a tick or between ticks, marks it as
+ * incomplete until the next one, and a run that dies in between can't be reopened. Copy
+ * the file aside to keep a restart point.
+ * <p>
+ * A file can only be held by one open table in a process; create refuses to replace a file
+ * that is still open, since truncating it would pull the pages out from under the mappings.
+ */
+class MappedAgentTable extends AgentTable implements Closeable {
+	private static final long MAGIC = 0x5642445341474e54L;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 4096;
+	//header fields
+	private static final int H_MAGIC = 0;
+	private static final int H_VERSION = 8;
+	private static final int H_CLEAN = 12;
+	private static final int H_ROWS = 16;
+	private static final int H_COLS = 20;
+	private static final int H_TIME_STEP = 24;
+	private static final int H_SEED = 32;
+	private static final int H_NOW = 40;
+	private static final int H_HUMANS = 48;
+	private static final int H_MOSQUITOES = 52;
+	private static final int H_INFECTED = 56;
+	private static final int H_RECOVERED = 60;
+	private static final int H_SEGMENTS = 64;
+	//one byte per segment: the kind of records it holds
+	private static final int SEGMENT_TABLE = 128;
+	//the number of strains, then each name as a short length and UTF-8 bytes
+	private static final int STRAIN_TABLE = 1024;
+	private static final int MAX_SEGMENTS = STRAIN_TABLE - SEGMENT_TABLE;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	//records per segment
+	private static final int SHIFT = 20;
+	private static final int MASK = (1 << SHIFT) - 1;
+
+	//human records
+	private static final int HUMAN_BYTES = 48;
+	private static final int HUMAN_UID = 0;
+	private static final int HUMAN_ROW = 8;
+	private static final int HUMAN_COL = 12;
+	private static final int HOME_ROW = 16;
+	private static final int HOME_COL = 20;
+	private static final int HUMAN_INFECTED_AT = 24;
+	private static final int HUMAN_STRAIN = 32;
+	private static final int HUMAN_ORDER = 36;
+	private static final int HUMAN_STATE = 40;
+
+	//mosquito records
+	private static final int MOSQUITO_BYTES = 40;
+	private static final int MOSQUITO_UID = 0;
+	private static final int MOSQUITO_ROW = 8;
+	private static final int MOSQUITO_COL = 12;
+	private static final int MOSQUITO_AGE = 16;
+	private static final int MOSQUITO_STRAIN = 24;
+	private static final int MOSQUITO_ORDER = 28;
+	private static final int MOSQUITO_STATE = 32;
+
+	//location records: the age of the reserve mosquito
+	private static final int LOCATION_BYTES = 8;
+
+	private static final byte HUMANS = 0;
+	private static final byte MOSQUITOES = 1;
+	private static final byte LOCATIONS = 2;
+
+	//the canonical paths of the files held by open tables in this process
+	private static final Set<File> OPEN = new HashSet<File>();
+
+	/**
+	 * the mapped segments holding one kind of record
+	 */
+	private static final class Region {
+		final int recordBytes;
+		MappedByteBuffer[] segments = new MappedByteBuffer[4];
+		int count = 0;
+
+		Region(int recordBytes)
+		{
+			this.recordBytes = recordBytes;
+		}
+	}
+
+	private final File path;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	//dropped by close() along with the segments, so the mappings can be garbage collected
+	private MappedByteBuffer header;
+	private final Region humans = new Region(HUMAN_BYTES);
+	private final Region mosquitoes = new Region(MOSQUITO_BYTES);
+	private final Region locations = new Region(LOCATION_BYTES);
+	private final int rows;
+	private final int cols;
+	private final double timeStepSeconds;
+	private final long seed;
+	//where the next segment goes
+	private long end = HEADER_BYTES;
+	private int segmentCount = 0;
+	private int humanCount = 0;
+	private int mosquitoCount = 0;
+	//true while the file holds the state of the last checkpoint
+	private boolean clean = false;
+
+	/**
+	 * map the header of a file
+	 */
+	private MappedAgentTable(File path, RandomAccessFile file, int rows, int cols, double timeStepSeconds, long seed) throws IOException
+	{
+		this.path = path;
+		this.file = file;
+		this.channel = file.getChannel();
+		this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		this.rows = rows;
+		this.cols = cols;
+		this.timeStepSeconds = timeStepSeconds;
+		this.seed = seed;
+	}
+
+	/**
+	 * create a file with no agents, replacing any file that is there
+	 * @param file the file
+	 * @param rows how many rows the lattice has
+	 * @param cols how many columns the lattice has
+	 * @param timeStepSeconds the time between simulation steps
+	 * @param seed the seed the engine's random number streams are derived from
+	 * @return the table
+	 * @throws IOException if the file can't be created, or is held by a table that is still open
+	 */
+	static MappedAgentTable create(File file, int rows, int cols, double timeStepSeconds, long seed) throws IOException
+	{
+		File path = hold(file);
+		RandomAccessFile raf = null;
+		try
+		{
+			raf = new RandomAccessFile(path, "rw");
+			raf.setLength(0);
+			MappedAgentTable table = new MappedAgentTable(path, raf, rows, cols, timeStepSeconds, seed);
+			MappedByteBuffer header = table.header;
+			header.putLong(H_MAGIC, MAGIC);
+			header.putInt(H_VERSION, VERSION);
+			header.putInt(H_CLEAN, 0);
+			header.putInt(H_ROWS, rows);
+			header.putInt(H_COLS, cols);
+			header.putDouble(H_TIME_STEP, timeStepSeconds);
+			header.putLong(H_SEED, seed);
+			if(rows * cols > 0)
+			{
+				table.ensure(table.locations, LOCATIONS, rows * cols - 1);
+			}
+			return table;
+		}catch(IOException ex)
+		{
+			release(path, raf);
+			throw ex;
+		}catch(RuntimeException ex)
+		{
+			release(path, raf);
+			throw ex;
+		}
+	}
+
+	/**
+	 * open a file written by a checkpoint
+	 * @param file the file
+	 * @return the table, holding the agents as they were at the checkpoint
+	 * @throws IOException if the file can't be read, isn't an agent file, or was left in the
+	 * middle of a tick, or if its strains have other IDs in this process
+	 */
+	static MappedAgentTable open(File file) throws IOException
+	{
+		File path = hold(file);
+		RandomAccessFile raf = null;
+		try
+		{
+			raf = new RandomAccessFile(path, "rw");
+			if(raf.length() < HEADER_BYTES)
+			{
+				throw new IOException(file + " is not an agent file");
+			}
+			MappedByteBuffer header = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if(header.getLong(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION)
+			{
+				throw new IOException(file + " is not an agent file");
+			}
+			if(header.getInt(H_CLEAN) == 0)
+			{
+				throw new IOException(file + " was left in the middle of a tick, it has no consistent state to restart from");
+			}
+			MappedAgentTable table = new MappedAgentTable(path, raf, header.getInt(H_ROWS), header.getInt(H_COLS),
+					header.getDouble(H_TIME_STEP), header.getLong(H_SEED));
+			table.readStrains();
+			int segments = header.getInt(H_SEGMENTS);
+			for(int i = 0; i < segments; i++)
+			{
+				byte kind = header.get(SEGMENT_TABLE + i);
+				table.mapSegment(table.region(kind), kind);
+			}
+			table.humanCount = header.getInt(H_HUMANS);
+			table.mosquitoCount = header.getInt(H_MOSQUITOES);
+			table.clean = true;
+			return table;
+		}catch(IOException ex)
+		{
+			release(path, raf);
+			throw ex;
+		}
+	}
+
+	/**
+	 * claim a file for a new table
+	 * @param file the file
+	 * @return its canonical path, to give back with release
+	 * @throws IOException if a table in this process still holds it
+	 */
+	private static File hold(File file) throws IOException
+	{
+		File path = file.getCanonicalFile();
+		synchronized(OPEN)
+		{
+			if(!OPEN.add(path))
+			{
+				throw new IOException(file + " is held by an agent table that is still open, close it first");
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * give back a file claimed with hold and close it
+	 * @param path the file's canonical path
+	 * @param raf the file, or null if it wasn't opened
+	 */
+	private static void release(File path, RandomAccessFile raf) throws IOException
+	{
+		synchronized(OPEN)
+		{
+			OPEN.remove(path);
+		}
+		if(raf != null)
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * @param kind HUMANS, MOSQUITOES or LOCATIONS
+	 * @return the region holding that kind of record
+	 */
+	private Region region(byte kind) throws IOException
+	{
+		switch(kind)
+		{
+		case HUMANS: return humans;
+		case MOSQUITOES: return mosquitoes;
+		case LOCATIONS: return locations;
+		default: throw new IOException("unknown segment kind " + kind);
+		}
+	}
+
+	/**
+	 * map segments onto the end of the file until a region can hold a record
+	 * @param region the region
+	 * @param kind the region's kind, for the segment table
+	 * @param index the record's index
+	 */
+	private void ensure(Region region, byte kind, int index)
+	{
+		while((index >>> SHIFT) >= region.count)
+		{
+			if(segmentCount == MAX_SEGMENTS)
+			{
+				throw new IllegalStateException("the agent file is full, it holds at most " + MAX_SEGMENTS + " segments");
+			}
+			try
+			{
+				mapSegment(region, kind);
+			}catch(IOException ex)
+			{
+				throw new IllegalStateException("can't grow the agent file", ex);
+			}
+			header.put(SEGMENT_TABLE + segmentCount - 1, kind);
+			header.putInt(H_SEGMENTS, segmentCount);
+		}
+	}
+
+	/**
+	 * map the next segment of the file, growing the file if it is shorter
+	 */
+	private void mapSegment(Region region, byte kind) throws IOException
+	{
+		long size = (long)region.recordBytes << SHIFT;
+		MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, end, size);
+		segment.order(ByteOrder.LITTLE_ENDIAN);
+		if(region.count == region.segments.length)
+		{
+			region.segments = Arrays.copyOf(region.segments, region.count * 2);
+		}
+		region.segments[region.count++] = segment;
+		end += size;
+		segmentCount++;
+	}
+
+	/**
+	 * register the strains listed in the header, which must get the IDs they had
+	 */
+	private void readStrains() throws IOException
+	{
+		int count = header.getInt(STRAIN_TABLE);
+		int position = STRAIN_TABLE + 4;
+		for(int id = 0; id < count; id++)
+		{
+			byte[] name = new byte[header.getShort(position)];
+			position += 2;
+			for(int i = 0; i < name.length; i++)
+			{
+				name[i] = header.get(position++);
+			}
+			String strain = new String(name, UTF8);
+			if(StrainRegistry.id(strain) != id)
+			{
+				throw new IOException("strain " + strain + " is " + StrainRegistry.id(strain) + " in this process but " + id + " in the agent file");
+			}
+		}
+	}
+
+	/**
+	 * list the strains known to the StrainRegistry in the header
+	 */
+	private void writeStrains() throws IOException
+	{
+		int count = StrainRegistry.size();
+		int position = STRAIN_TABLE + 4;
+		for(int id = 0; id < count; id++)
+		{
+			byte[] name = StrainRegistry.name(id).getBytes(UTF8);
+			if(position + 2 + name.length > HEADER_BYTES)
+			{
+				throw new IOException("the strain names don't fit in the agent file's header");
+			}
+			header.putShort(position, (short)name.length);
+			position += 2;
+			for(byte b : name)
+			{
+				header.put(position++, b);
+			}
+		}
+		header.putInt(STRAIN_TABLE, count);
+	}
+
+	/**
+	 * @return how many rows the lattice has
+	 */
+	int getRows()
+	{
+		return rows;
+	}
+
+	/**
+	 * @return how many columns the lattice has
+	 */
+	int getColumns()
+	{
+		return cols;
+	}
+
+	/**
+	 * @return the time between simulation steps
+	 */
+	double getTimeStep()
+	{
+		return timeStepSeconds;
+	}
+
+	/**
+	 * @return the seed the engine's random number streams are derived from
+	 */
+	long getSeed()
+	{
+		return seed;
+	}
+
+	/**
+	 * @return seconds since the engine started, at the checkpoint
+	 */
+	double getTime()
+	{
+		return header.getDouble(H_NOW);
+	}
+
+	/**
+	 * @return the number of infected humans and mosquitoes at the checkpoint
+	 */
+	int getInfected()
+	{
+		return header.getInt(H_INFECTED);
+	}
+
+	/**
+	 * @return the number of recovered humans at the checkpoint
+	 */
+	int getRecovered()
+	{
+		return header.getInt(H_RECOVERED);
+	}
+
+	/**
+	 * @return the length of the file in bytes
+	 */
+	long getFileBytes()
+	{
+		return end;
+	}
+
+	@Override
+	void beginTick() throws IOException
+	{
+		dirty();
+	}
+
+	/**
+	 * mark the file as no longer holding the last checkpoint's state. Every method that
+	 * changes a record calls this first
+	 */
+	private void dirty()
+	{
+		if(clean)
+		{
+			//on disk before any record changes
+			header.putInt(H_CLEAN, 0);
+			header.force();
+			clean = false;
+		}
+	}
+
+	@Override
+	void checkpoint(double now, int infected, int recovered) throws IOException
+	{
+		header.putDouble(H_NOW, now);
+		header.putInt(H_HUMANS, humanCount);
+		header.putInt(H_MOSQUITOES, mosquitoCount);
+		header.putInt(H_INFECTED, infected);
+		header.putInt(H_RECOVERED, recovered);
+		writeStrains();
+		for(Region region : new Region[]{humans, mosquitoes, locations})
+		{
+			for(int i = 0; i < region.count; i++)
+			{
+				region.segments[i].force();
+			}
+		}
+		header.force();
+		//the records and counters are on disk, so the file can be marked as a restart point
+		header.putInt(H_CLEAN, 1);
+		header.force();
+		clean = true;
+	}
+
+	/**
+	 * close the file and drop the mappings, which are unmapped once they are garbage
+	 * collected. The table must not be used any more
+	 * @throws IOException if the file can't be closed
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if(header == null)
+		{
+			return;
+		}
+		header = null;
+		for(Region region : new Region[]{humans, mosquitoes, locations})
+		{
+			region.segments = null;
+			region.count = 0;
+		}
+		channel.close();
+		release(path, file);
+	}
+
+	@Override
+	int getHumanCount()
+	{
+		return humanCount;
+	}
+
+	@Override
+	int addHuman(long uid, int row, int col, int home_row, int home_col)
+	{
+		dirty();
+		int h = humanCount;
+		ensure(humans, HUMANS, h);
+		MappedByteBuffer segment = humans.segments[h >>> SHIFT];
+		int offset = (h & MASK) * HUMAN_BYTES;
+		segment.putLong(offset + HUMAN_UID, uid);
+		segment.putInt(offset + HUMAN_ROW, row);
+		segment.putInt(offset + HUMAN_COL, col);
+		segment.putInt(offset + HOME_ROW, home_row);
+		segment.putInt(offset + HOME_COL, home_col);
+		segment.putDouble(offset + HUMAN_INFECTED_AT, 0);
+		segment.putInt(offset + HUMAN_STRAIN, -1);
+		segment.put(offset + HUMAN_STATE, ArrayEngine.SUSCEPTIBLE);
+		humanCount++;
+		return h;
+	}
+
+	@Override long getHumanUID(int h) { return humans.segments[h >>> SHIFT].getLong((h & MASK) * HUMAN_BYTES + HUMAN_UID); }
+	@Override int getHumanRow(int h) { return humans.segments[h >>> SHIFT].getInt((h & MASK) * HUMAN_BYTES + HUMAN_ROW); }
+	@Override int getHumanColumn(int h) { return humans.segments[h >>> SHIFT].getInt((h & MASK) * HUMAN_BYTES + HUMAN_COL); }
+	@Override int getHomeRow(int h) { return humans.segments[h >>> SHIFT].getInt((h & MASK) * HUMAN_BYTES + HOME_ROW); }
+	@Override int getHomeColumn(int h) { return humans.segments[h >>> SHIFT].getInt((h & MASK) * HUMAN_BYTES + HOME_COL); }
+	@Override byte getHumanState(int h) { return humans.segments[h >>> SHIFT].get((h & MASK) * HUMAN_BYTES + HUMAN_STATE); }
+	@Override int getHumanStrain(int h) { return humans.segments[h >>> SHIFT].getInt((h & MASK) * HUMAN_BYTES + HUMAN_STRAIN); }
+	@Override double getHumanInfectedAt(int h) { return humans.segments[h >>> SHIFT].getDouble((h & MASK) * HUMAN_BYTES + HUMAN_INFECTED_AT); }
+	@Override int getHumanOrder(int i) { return humans.segments[i >>> SHIFT].getInt((i & MASK) * HUMAN_BYTES + HUMAN_ORDER); }
+
+	@Override
+	void setHumanPosition(int h, int row, int col)
+	{
+		dirty();
+		MappedByteBuffer segment = humans.segments[h >>> SHIFT];
+		int offset = (h & MASK) * HUMAN_BYTES;
+		segment.putInt(offset + HUMAN_ROW, row);
+		segment.putInt(offset + HUMAN_COL, col);
+	}
+
+	@Override void setHumanState(int h, byte state) { dirty(); humans.segments[h >>> SHIFT].put((h & MASK) * HUMAN_BYTES + HUMAN_STATE, state); }
+	@Override void setHumanStrain(int h, int strain) { dirty(); humans.segments[h >>> SHIFT].putInt((h & MASK) * HUMAN_BYTES + HUMAN_STRAIN, strain); }
+	@Override void setHumanInfectedAt(int h, double time) { dirty(); humans.segments[h >>> SHIFT].putDouble((h & MASK) * HUMAN_BYTES + HUMAN_INFECTED_AT, time); }
+	@Override void setHumanOrder(int i, int h) { dirty(); humans.segments[i >>> SHIFT].putInt((i & MASK) * HUMAN_BYTES + HUMAN_ORDER, h); }
+
+	@Override
+	int getMosquitoCount()
+	{
+		return mosquitoCount;
+	}
+
+	@Override
+	int addMosquito(long uid, int row, int col, double age)
+	{
+		dirty();
+		int m = mosquitoCount;
+		ensure(mosquitoes, MOSQUITOES, m);
+		MappedByteBuffer segment = mosquitoes.segments[m >>> SHIFT];
+		int offset = (m & MASK) * MOSQUITO_BYTES;
+		segment.putLong(offset + MOSQUITO_UID, uid);
+		segment.putInt(offset + MOSQUITO_ROW, row);
+		segment.putInt(offset + MOSQUITO_COL, col);
+		segment.putDouble(offset + MOSQUITO_AGE, age);
+		segment.putInt(offset + MOSQUITO_STRAIN, -1);
+		segment.put(offset + MOSQUITO_STATE, ArrayEngine.SUSCEPTIBLE);
+		mosquitoCount++;
+		return m;
+	}
+
+	@Override
+	void removeMosquito(int m)
+	{
+		dirty();
+		int last = --mosquitoCount;
+		MappedByteBuffer from = mosquitoes.segments[last >>> SHIFT];
+		MappedByteBuffer to = mosquitoes.segments[m >>> SHIFT];
+		int source = (last & MASK) * MOSQUITO_BYTES;
+		int target = (m & MASK) * MOSQUITO_BYTES;
+		//the order field is left alone, like the other tables
+		to.putLong(target + MOSQUITO_UID, from.getLong(source + MOSQUITO_UID));
+		to.putInt(target + MOSQUITO_ROW, from.getInt(source + MOSQUITO_ROW));
+		to.putInt(target + MOSQUITO_COL, from.getInt(source + MOSQUITO_COL));
+		to.putDouble(target + MOSQUITO_AGE, from.getDouble(source + MOSQUITO_AGE));
+		to.putInt(target + MOSQUITO_STRAIN, from.getInt(source + MOSQUITO_STRAIN));
+		to.put(target + MOSQUITO_STATE, from.get(source + MOSQUITO_STATE));
+	}
+
+	@Override long getMosquitoUID(int m) { return mosquitoes.segments[m >>> SHIFT].getLong((m & MASK) * MOSQUITO_BYTES + MOSQUITO_UID); }
+	@Override int getMosquitoRow(int m) { return mosquitoes.segments[m >>> SHIFT].getInt((m & MASK) * MOSQUITO_BYTES + MOSQUITO_ROW); }
+	@Override int getMosquitoColumn(int m) { return mosquitoes.segments[m >>> SHIFT].getInt((m & MASK) * MOSQUITO_BYTES + MOSQUITO_COL); }
+	@Override double getMosquitoAge(int m) { return mosquitoes.segments[m >>> SHIFT].getDouble((m & MASK) * MOSQUITO_BYTES + MOSQUITO_AGE); }
+	@Override byte getMosquitoState(int m) { return mosquitoes.segments[m >>> SHIFT].get((m & MASK) * MOSQUITO_BYTES + MOSQUITO_STATE); }
+	@Override int getMosquitoStrain(int m) { return mosquitoes.segments[m >>> SHIFT].getInt((m & MASK) * MOSQUITO_BYTES + MOSQUITO_STRAIN); }
+	@Override int getMosquitoOrder(int i) { return mosquitoes.segments[i >>> SHIFT].getInt((i & MASK) * MOSQUITO_BYTES + MOSQUITO_ORDER); }
+
+	@Override
+	void setMosquitoPosition(int m, int row, int col)
+	{
+		dirty();
+		MappedByteBuffer segment = mosquitoes.segments[m >>> SHIFT];
+		int offset = (m & MASK) * MOSQUITO_BYTES;
+		segment.putInt(offset + MOSQUITO_ROW, row);
+		segment.putInt(offset + MOSQUITO_COL, col);
+	}
+
+	@Override void setMosquitoAge(int m, double age) { dirty(); mosquitoes.segments[m >>> SHIFT].putDouble((m & MASK) * MOSQUITO_BYTES + MOSQUITO_AGE, age); }
+	@Override void setMosquitoState(int m, byte state) { dirty(); mosquitoes.segments[m >>> SHIFT].put((m & MASK) * MOSQUITO_BYTES + MOSQUITO_STATE, state); }
+	@Override void setMosquitoStrain(int m, int strain) { dirty(); mosquitoes.segments[m >>> SHIFT].putInt((m & MASK) * MOSQUITO_BYTES + MOSQUITO_STRAIN, strain); }
+	@Override void setMosquitoOrder(int i, int m) { dirty(); mosquitoes.segments[i >>> SHIFT].putInt((i & MASK) * MOSQUITO_BYTES + MOSQUITO_ORDER, m); }
+
+	@Override double getReserveAge(int c) { return locations.segments[c >>> SHIFT].getDouble((c & MASK) * LOCATION_BYTES); }
+	@Override void setReserveAge(int c, double age) { dirty(); locations.segments[c >>> SHIFT].putDouble((c & MASK) * LOCATION_BYTES, age); }
+}
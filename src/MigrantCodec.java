@@ -0,0 +1,115 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * writes agents that move between the worlds of a DistributedRunner to a byte stream and
+ * reads them back in the destination world: type, UID, new location, home (humans), age
+ * (mosquitoes) and every infection with its state and time. Strains are sent by name,
+ * because each process has its own StrainRegistry. The worlds' clocks run in step, so
+ * times on one world's clock mean the same on the other's
+ */
+public class MigrantCodec {
+	private static final byte HUMAN = 0;
+	private static final byte MOSQUITO = 1;
+
+	private MigrantCodec()
+	{
+	}
+
+	/**
+	 * @param agent a Human or Mosquito
+	 * @param out where to write it
+	 * @throws IOException if out can't be written to
+	 * @throws IllegalArgumentException for any other kind of agent
+	 */
+	public static void write(Agent agent, DataOutput out) throws IOException
+	{
+		if(agent instanceof Human)
+		{
+			Human human = (Human)agent;
+			out.writeByte(HUMAN);
+			writeLocation(agent, out);
+			out.writeInt(human.homeRow);
+			out.writeInt(human.homeCol);
+		}else if(agent instanceof Mosquito)
+		{
+			out.writeByte(MOSQUITO);
+			writeLocation(agent, out);
+			out.writeDouble(((Mosquito)agent).getAge());
+		}else{
+			throw new IllegalArgumentException("can't migrate a " + agent.getType());
+		}
+		Disease[] infections = agent.getInfections();
+		out.writeByte(infections.length);
+		for(Disease disease : infections)
+		{
+			out.writeUTF(disease.getStrain());
+			out.writeByte(disease.getState().ordinal());
+			out.writeDouble(disease.getInfectedAt());
+		}
+	}
+
+	private static void writeLocation(Agent agent, DataOutput out) throws IOException
+	{
+		out.writeLong(agent.getUID());
+		out.writeInt(agent.getRow());
+		out.writeInt(agent.getColumn());
+	}
+
+	/**
+	 * read an agent written by write into the calling thread's current world. It isn't
+	 * placed yet, the caller has it enter its location; its pending events are scheduled
+	 * @param in where to read it from
+	 * @return the agent
+	 * @throws IOException if in can't be read or holds something else
+	 */
+	public static Agent read(DataInput in) throws IOException
+	{
+		byte kind = in.readByte();
+		long uid = in.readLong();
+		int row = in.readInt();
+		int col = in.readInt();
+		Agent agent;
+		if(kind == HUMAN)
+		{
+			Human human = new Human(in.readInt(), in.readInt(), uid);
+			human.setPosition(row, col);
+			agent = human;
+		}else if(kind == MOSQUITO)
+		{
+			agent = new Mosquito(row, col, in.readDouble(), uid);
+		}else{
+			throw new IOException("unknown agent kind " + kind);
+		}
+		Disease.State[] states = Disease.State.values();
+		for(int n = in.readByte(); n > 0; n--)
+		{
+			int strainId = StrainRegistry.id(in.readUTF());
+			Disease.State state = states[in.readByte()];
+			agent.restoreInfection(new Disease(strainId, state, in.readDouble(), agent.world));
+		}
+		//a mosquito schedules its death once it is placed and knows when it was born
+		agent.scheduleEvents();
+		return agent;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.List;
+
+/**
+ * how a World that owns one domain of a Decomposition trades agents with the worlds that
+ * own the others. World.tick calls exchange once per tick, after every location has ticked
+ * and before the entrances, so it is also the point where the worlds keep step
+ */
+public interface MigrationChannel {
+	/**
+	 * send the agents that moved out of this world's domain to the worlds that own their
+	 * new locations, and receive the agents that moved into it
+	 * @param emigrants the agents leaving, in lattice order; they are no longer part of this world
+	 * @return the agents arriving, created in this world and positioned in its domain
+	 * @throws IllegalStateException if the other worlds can't be reached
+	 */
+	List<Agent> exchange(List<Agent> emigrants);
+}
@@ -1,4 +1,3 @@
-import java.util.Vector;
 
 /*
  *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
@@ -28,7 +27,10 @@ public class Mosquito extends Agent {
 	
 	public static final double lifespan_max = 28.0*3600*24;
 	public static final double encounter_survival_rate = 0.5;
+	//age while in reserve, once placed the age follows from bornAt
 	double age;
+	//simulated time of birth, see World.getElapsedSeconds, NaN until the mosquito is placed
+	double bornAt = Double.NaN;
 	public static final String type = "MOSQUITO";
 	//TODO: better functional description of biting behavior
 	public static final double bite_rate = 0.01;
@@ -38,6 +40,108 @@ public class Mosquito extends Agent {
 		//TODO: determine age at time of instantiation
 		age = World.randNum() * lifespan_max;
 	}
+	
+	/**
+	 * a constructor for a mosquito of a given age, which draws no random numbers
+	 * @param currRow the mosquito's row
+	 * @param currCol the mosquito's column
+	 * @param age the mosquito's age in seconds
+	 */
+	Mosquito(int currRow, int currCol, double age){
+		super(type, currRow, currCol);
+		this.age = age;
+	}
+	
+	/**
+	 * a constructor for a mosquito that keeps the UID it had in another world
+	 * @param currRow the mosquito's row
+	 * @param currCol the mosquito's column
+	 * @param age the mosquito's age in seconds
+	 * @param uid the mosquito's UID
+	 */
+	Mosquito(int currRow, int currCol, double age, long uid){
+		super(type, currRow, currCol, uid);
+		this.age = age;
+	}
+	/**
+	 * make a dead mosquito new again, see MosquitoPool
+	 * @param currRow the mosquito's row
+	 * @param currCol the mosquito's column
+	 * @param age the mosquito's age in seconds
+	 */
+	void reissue(int currRow, int currCol, double age)
+	{
+		reset(currRow, currCol);
+		this.age = age;
+		bornAt = Double.NaN;
+	}
+	
+	/**
+	 * @return the mosquito's age in seconds
+	 */
+	public double getAge()
+	{
+		if(Double.isNaN(bornAt))
+		{
+			return age;
+		}
+		return world.getElapsedSeconds() - bornAt;
+	}
+	
+	/**
+	 * @param age the mosquito's new age in seconds
+	 */
+	public void setAge(double age)
+	{
+		this.age = age;
+		if(!Double.isNaN(bornAt))
+		{
+			bornAt = world.getElapsedSeconds() - age;
+			scheduleEvents();
+		}
+	}
+	
+	/**
+	 * start aging on the world's clock and schedule death of old age
+	 */
+	@Override
+	void onPlaced()
+	{
+		bornAt = world.getElapsedSeconds() - age;
+		scheduleEvents();
+	}
+	
+	/**
+	 * die of old age, if older than lifespan_max by the end of this tick
+	 */
+	@Override
+	void onScheduledEvent()
+	{
+		//killed while feeding since the death was scheduled, or younger after a setAge
+		if(!dead && getAge() + world.getTimeStep() > lifespan_max)
+		{
+			die();
+		}
+	}
+	
+	@Override
+	void scheduleEvents()
+	{
+		if(!dead && !Double.isNaN(bornAt))
+		{
+			world.schedule(this, world.tickEndingAfter(bornAt + lifespan_max));
+		}
+	}
+	
+	/**
+	 * die while biting a human
+	 */
+	void killedFeeding()
+	{
+		report(EventSink.Kind.KILLED_FEEDING, getStrain());
+		die();
+	}
+	
 	/**
 	 * simulate the agent's behavior for this time period
 	 * @param deltaTime in seconds
@@ -50,29 +154,21 @@ public class Mosquito extends Agent {
 		//TODO: disease progress!
 		//for now infectious until death, so no change in state
 		//TODO: more realistic function to die
-		age+=deltaTime;
-		if(age > lifespan_max)
-		{
-			die();
-		} else if(World.getLocation(getRow(), getColumn()).hasAny(Human.type)){
-			//possibly bite someone
-			if(World.randNum() < bite_rate){
+		Environment here = world.getLocation(getRow(), getColumn());
+		if(here.countHumans() > 0){
+			//possibly bite someone, unless the location samples its mosquitoes' bites
+			if(!world.usesBatchedBites() && World.randNum() < bite_rate){
 				//choose a random human
-				Vector<Agent> humans = World.getLocation(getRow(), getColumn()).getAll(Human.type);
-				int random_idx = (int)(World.randNum() * humans.size());
-				if(humans.get(random_idx) instanceof Human){
-					Human victim = (Human)humans.get(random_idx);
-					victim.recieveBite(this);
-					if(World.randNum() > encounter_survival_rate)
-					{
-						System.out.println("MOSQUITO "+getUID() + " was killed while feeding");
-						die();
-					}
+				Human victim = here.randomHuman();
+				victim.recieveBite(this);
+				if(World.randNum() > encounter_survival_rate)
+				{
+					killedFeeding();
 				}
 			}
 		}else{
 			//no humans present
-			moveTo(levyFlight(getRow()),levyFlight(getColumn()));
+			levyMove();
 		}
 		
 	}
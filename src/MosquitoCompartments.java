@@ -0,0 +1,184 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+/**
+ * the mosquitoes of one location kept as counts instead of Mosquito agents: susceptible
+ * and infected mosquitoes in age bins that together cover Mosquito.lifespan_max.
+ * Mosquitoes move up one bin every lifespan_max / AGE_BINS seconds, those in the last bin
+ * die of age, and new susceptible mosquitoes emerge into the first bin so that the
+ * population stays around the location's mosquito density.
+ * All infected mosquitoes at a location carry the same strain, the one that infected the
+ * first of them. Memory and time do not depend on how many mosquitoes there are.
+ */
+public class MosquitoCompartments {
+	//number of age bins the lifespan is split into
+	static final int AGE_BINS = 14;
+	private static final double BIN_SECONDS = Mosquito.lifespan_max / AGE_BINS;
+
+	private final PoissonSampler emergence;
+	private final int[] susceptible = new int[AGE_BINS];
+	private final int[] infected = new int[AGE_BINS];
+	private int susceptibleTotal = 0;
+	private int infectedTotal = 0;
+	private String strain = "";
+	//seconds until the next move up a bin
+	private double untilAgeing;
+
+	/**
+	 * fill the age bins with a random population of susceptible mosquitoes
+	 * @param density the average number of mosquitoes at the location
+	 * @param rng the random number stream to draw from
+	 */
+	MosquitoCompartments(double density, SimRandom rng)
+	{
+		emergence = PoissonSampler.forRate(density / AGE_BINS);
+		for(int b = 0; b < AGE_BINS; b++)
+		{
+			susceptible[b] = emergence.sample(rng);
+			susceptibleTotal += susceptible[b];
+		}
+		//start locations at different points of the ageing cycle so they don't all age in the same tick
+		untilAgeing = rng.nextDouble() * BIN_SECONDS;
+	}
+
+	/**
+	 * let time pass: mosquitoes move up the age bins, the oldest die and new ones emerge
+	 * @param deltaTime in seconds
+	 * @param rng the random number stream to draw from
+	 * @return the number of infected mosquitoes that died of age
+	 */
+	int age(double deltaTime, SimRandom rng)
+	{
+		int died = 0;
+		untilAgeing -= deltaTime;
+		while(untilAgeing <= 0)
+		{
+			untilAgeing += BIN_SECONDS;
+			int last = AGE_BINS - 1;
+			susceptibleTotal -= susceptible[last];
+			infectedTotal -= infected[last];
+			died += infected[last];
+			System.arraycopy(susceptible, 0, susceptible, 1, last);
+			System.arraycopy(infected, 0, infected, 1, last);
+			susceptible[0] = emergence.sample(rng);
+			susceptibleTotal += susceptible[0];
+			infected[0] = 0;
+		}
+		if(infectedTotal == 0)
+		{
+			strain = "";
+		}
+		return died;
+	}
+
+	/**
+	 * infect randomly chosen susceptible mosquitoes, they keep their age
+	 * @param count how many to infect
+	 * @param newStrain the strain they catch, ignored if there already are infected mosquitoes here
+	 * @param rng the random number stream to draw from
+	 * @return the number infected, count or every susceptible mosquito if there are fewer
+	 */
+	int infect(int count, String newStrain, SimRandom rng)
+	{
+		if(infectedTotal == 0)
+		{
+			strain = newStrain;
+		}
+		int moved = take(susceptible, susceptibleTotal, count, infected, rng);
+		susceptibleTotal -= moved;
+		infectedTotal += moved;
+		return moved;
+	}
+
+	/**
+	 * kill randomly chosen infected mosquitoes
+	 * @param count how many to kill
+	 * @param rng the random number stream to draw from
+	 * @return the number killed, count or every infected mosquito if there are fewer
+	 */
+	int killInfected(int count, SimRandom rng)
+	{
+		int killed = take(infected, infectedTotal, count, null, rng);
+		infectedTotal -= killed;
+		if(infectedTotal == 0)
+		{
+			strain = "";
+		}
+		return killed;
+	}
+
+	/**
+	 * remove mosquitoes chosen uniformly from a set of bins. How many come from each bin is
+	 * drawn bin by bin, each from a binomial over what is left, so this takes AGE_BINS draws
+	 * however many mosquitoes are moved
+	 * @param from the bins to take from
+	 * @param total the number of mosquitoes in from
+	 * @param count how many to take
+	 * @param to bins to add the taken mosquitoes to, at the same age, or null to drop them
+	 * @param rng the random number stream to draw from
+	 * @return the number taken
+	 */
+	private static int take(int[] from, int total, int count, int[] to, SimRandom rng)
+	{
+		count = Math.min(count, total);
+		int left = count;
+		int remaining = total;
+		for(int b = 0; b < from.length && left > 0; b++)
+		{
+			int taken = Math.min(from[b], BinomialSampler.sample(left, from[b] / (double)remaining, rng));
+			remaining -= from[b];
+			from[b] -= taken;
+			if(to != null) to[b] += taken;
+			left -= taken;
+		}
+		//a draw larger than its bin leaves some over, take them from the youngest bins that have any
+		for(int b = 0; b < from.length && left > 0; b++)
+		{
+			int taken = Math.min(from[b], left);
+			from[b] -= taken;
+			if(to != null) to[b] += taken;
+			left -= taken;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of susceptible mosquitoes
+	 */
+	public int getSusceptible()
+	{
+		return susceptibleTotal;
+	}
+
+	/**
+	 * @return the number of infected mosquitoes
+	 */
+	public int getInfected()
+	{
+		return infectedTotal;
+	}
+
+	/**
+	 * @return the strain the infected mosquitoes carry, empty if there are none
+	 */
+	public String getStrain()
+	{
+		return strain;
+	}
+}
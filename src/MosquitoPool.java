@@ -0,0 +1,169 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+
+/**
+ * a bounded free list of dead Mosquito agents, so the mosquitoes a World creates and kills
+ * every tick are reissued instead of left for the garbage collector. A mosquito is released
+ * once it has left its location for good, and comes back out with a new UID and no
+ * infections, drawing the same random numbers a new Mosquito would, so a run with the pool
+ * gives the same results as one without. Events the mosquito had scheduled in its last
+ * life are recognised by its old UID and dropped, see TimingWheel.
+ * Mosquitoes are acquired and released by several tick threads at once.
+ */
+public class MosquitoPool {
+	private final Mosquito[] free;
+	private int size = 0;
+	private long requests = 0;
+	private long hits = 0;
+	private long released = 0;
+	private long dropped = 0;
+
+	/**
+	 * @param capacity the largest number of dead mosquitoes kept for reuse, 0 for none
+	 */
+	public MosquitoPool(int capacity)
+	{
+		if(capacity < 0)
+		{
+			throw new IllegalArgumentException("capacity must not be negative");
+		}
+		free = new Mosquito[capacity];
+	}
+
+	/**
+	 * a mosquito of random age, as new Mosquito(row, col) would make
+	 * @param row the mosquito's row
+	 * @param col the mosquito's column
+	 * @return a reissued or new mosquito
+	 */
+	public Mosquito acquire(int row, int col)
+	{
+		Mosquito mosquito = take();
+		if(mosquito == null)
+		{
+			return new Mosquito(row, col);
+		}
+		mosquito.reissue(row, col, World.randNum() * Mosquito.lifespan_max);
+		return mosquito;
+	}
+
+	/**
+	 * a mosquito of a given age, as new Mosquito(row, col, age) would make
+	 * @param row the mosquito's row
+	 * @param col the mosquito's column
+	 * @param age the mosquito's age in seconds
+	 * @return a reissued or new mosquito
+	 */
+	public Mosquito acquire(int row, int col, double age)
+	{
+		Mosquito mosquito = take();
+		if(mosquito == null)
+		{
+			return new Mosquito(row, col, age);
+		}
+		mosquito.reissue(row, col, age);
+		return mosquito;
+	}
+
+	private synchronized Mosquito take()
+	{
+		requests++;
+		if(size == 0)
+		{
+			return null;
+		}
+		hits++;
+		Mosquito mosquito = free[--size];
+		free[size] = null;
+		return mosquito;
+	}
+
+	/**
+	 * keep a dead mosquito for reuse, or drop it if the pool is full. Nothing else may
+	 * hold on to it: it must have left its location and not be anyone's reserve mosquito
+	 * @param mosquito the dead mosquito
+	 */
+	public synchronized void release(Mosquito mosquito)
+	{
+		released++;
+		if(size == free.length)
+		{
+			dropped++;
+			return;
+		}
+		free[size++] = mosquito;
+	}
+
+	/**
+	 * @return the largest number of dead mosquitoes kept for reuse
+	 */
+	public int getCapacity()
+	{
+		return free.length;
+	}
+
+	/**
+	 * @return the number of dead mosquitoes waiting to be reused
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the number of mosquitoes asked for
+	 */
+	public synchronized long getRequests()
+	{
+		return requests;
+	}
+
+	/**
+	 * @return the number of mosquitoes asked for that were reissued instead of made
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the fraction of mosquitoes asked for that were reissued, 0 before the first
+	 */
+	public synchronized double getHitRate()
+	{
+		return requests == 0 ? 0 : hits / (double)requests;
+	}
+
+	/**
+	 * @return the number of dead mosquitoes given back
+	 */
+	public synchronized long getReleased()
+	{
+		return released;
+	}
+
+	/**
+	 * @return the number of dead mosquitoes given back while the pool was full, left for the garbage collector
+	 */
+	public synchronized long getDropped()
+	{
+		return dropped;
+	}
+}
@@ -0,0 +1,91 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class tests the MosquitoPool class
+ */
+public class MosquitoPoolTest {
+
+	/**
+	 * a released mosquito comes back new, and the pool keeps no more than its capacity
+	 */
+	@Test
+	public void testReissue(){
+		World world = new World(5, 5, 3600.0, 0.5, 0, 3);
+		world.setEventSink(new NullEventSink());
+		MosquitoPool pool = new MosquitoPool(1);
+		Mosquito first = pool.acquire(1, 1, 100.0);
+		first.recieveDisease("ACGT");
+		long uid = first.getUID();
+		first.dead = true;
+		pool.release(first);
+		pool.release(new Mosquito(2, 2, 0.0));
+		assertEquals(1, pool.size());
+		assertEquals(1, pool.getDropped());
+
+		Mosquito second = pool.acquire(3, 4, 200.0);
+		assertSame(first, second);
+		assertNotEquals(uid, second.getUID());
+		assertTrue(second.isSusceptible());
+		assertFalse(second.dead);
+		assertEquals(3, second.getRow());
+		assertEquals(4, second.getColumn());
+		assertEquals(200.0, second.getAge(), 0);
+		assertEquals(0.5, pool.getHitRate(), 0);
+		World.setCurrent(null);
+	}
+
+	/**
+	 * an event scheduled before the agent was reissued does not fire for its new life
+	 */
+	@Test
+	public void testStaleEvent(){
+		final int[] fired = new int[1];
+		Agent agent = new Agent("TEST", 0, 0){
+			@Override
+			void onScheduledEvent()
+			{
+				fired[0]++;
+			}
+		};
+		TimingWheel timeline = new TimingWheel(8);
+		timeline.schedule(agent, 3);
+		agent.reset(0, 0);
+		timeline.schedule(agent, 3);
+		timeline.fire(3);
+		assertEquals(1, fired[0]);
+		assertEquals(0, timeline.size());
+	}
+
+	/**
+	 * @param pool the new world's mosquito pool
+	 * @return a world with 20 infections that don't depend on anything constructed before it
+	 */
+	private static World newWorld(MosquitoPool pool){
+		World world = new World(30, 30, 3600.0, 0.5, 2, 8);
+		world.setEventSink(new NullEventSink());
+		world.setMosquitoPool(pool);
+		for(int i = 0; i < 20; i++){
+			world.introduceInfection("ACGT");
+		}
+		return world;
+	}
+
+	/**
+	 * a run that reissues mosquitoes gives the same results as one that makes new ones
+	 */
+	@Test
+	public void testSameRun(){
+		World pooled = newWorld(new MosquitoPool(World.MOSQUITO_POOL_CAPACITY));
+		World unpooled = newWorld(new MosquitoPool(0));
+		for(int t = 0; t < 400; t++){
+			pooled.tick();
+			unpooled.tick();
+			assertEquals(unpooled.countInfections(), pooled.countInfections());
+			assertEquals(unpooled.countRecovered(), pooled.countRecovered());
+		}
+		assertTrue(pooled.getMosquitoPool().getHits() > 0);
+		assertEquals(0, unpooled.getMosquitoPool().getHits());
+		World.setCurrent(null);
+	}
+}
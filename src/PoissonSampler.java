@@ -0,0 +1,198 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * samples poisson distributed numbers of events for a fixed rate.
+ * Small rates use a precomputed cumulative distribution table (inverse CDF), large rates
+ * use Hormann's transformed rejection method (PTRS), which takes a constant expected
+ * number of draws however large the rate is.
+ * see W. Hormann, "The transformed rejection method for generating Poisson random variables", 1993
+ */
+public class PoissonSampler {
+	//rates at or above this use PTRS
+	private static final double TABLE_LIMIT = 10;
+	//cap on the number of distinct rates whose samplers are kept by forRate
+	private static final int CACHE_LIMIT = 64;
+	private static final ConcurrentHashMap<Double, PoissonSampler> cache = new ConcurrentHashMap<Double, PoissonSampler>();
+	private static final double[] LOG_FACTORIAL = new double[256];
+	static
+	{
+		for(int k = 1; k < LOG_FACTORIAL.length; k++)
+		{
+			LOG_FACTORIAL[k] = LOG_FACTORIAL[k - 1] + Math.log(k);
+		}
+	}
+
+	private final double rate;
+	//inverse CDF: cdf[k] is the probability of k or fewer events
+	private final double[] cdf;
+	//PTRS constants
+	private final double logRate;
+	private final double b;
+	private final double a;
+	private final double invAlpha;
+	private final double vr;
+
+	/**
+	 * @param rate the poisson rate, must not be negative
+	 */
+	public PoissonSampler(double rate)
+	{
+		if(!(rate >= 0))
+		{
+			throw new IllegalArgumentException("poisson rate must not be negative: " + rate);
+		}
+		this.rate = rate;
+		this.logRate = Math.log(rate);
+		if(rate < TABLE_LIMIT)
+		{
+			cdf = buildTable(rate);
+			b = a = invAlpha = vr = 0;
+		}else{
+			cdf = null;
+			double smu = Math.sqrt(rate);
+			b = 0.931 + 2.53 * smu;
+			a = -0.059 + 0.02483 * b;
+			invAlpha = 1.1239 + 1.1328 / (b - 3.4);
+			vr = 0.9277 - 3.6224 / (b - 2);
+		}
+	}
+
+	/**
+	 * get a sampler for the given rate, reusing the table built for an earlier call
+	 * @param rate the poisson rate
+	 * @return a sampler for that rate
+	 */
+	public static PoissonSampler forRate(double rate)
+	{
+		PoissonSampler sampler = cache.get(rate);
+		if(sampler == null)
+		{
+			sampler = new PoissonSampler(rate);
+			if(cache.size() < CACHE_LIMIT)
+			{
+				cache.putIfAbsent(rate, sampler);
+			}
+		}
+		return sampler;
+	}
+
+	/**
+	 * @param rate the poisson rate
+	 * @return the cumulative probabilities up to the point where the remaining tail is negligible
+	 */
+	private static double[] buildTable(double rate)
+	{
+		int size = (int)(rate + 12 * Math.sqrt(rate) + 16);
+		double[] table = new double[size];
+		double p = Math.exp(-rate);
+		double sum = 0;
+		for(int k = 0; k < size; k++)
+		{
+			sum += p;
+			table[k] = sum;
+			p = p * rate / (k + 1);
+		}
+		return table;
+	}
+
+	/**
+	 * @return the poisson rate
+	 */
+	public double getRate()
+	{
+		return rate;
+	}
+
+	/**
+	 * @param rng the random number stream to draw from
+	 * @return the number of events
+	 */
+	public int sample(SimRandom rng)
+	{
+		if(cdf != null)
+		{
+			double u = rng.nextDouble();
+			for(int k = 0; k < cdf.length; k++)
+			{
+				if(u < cdf[k]) return k;
+			}
+			//u fell in the tail beyond the table, which is below double precision
+			return cdf.length;
+		}
+		return sampleRejection(rng);
+	}
+
+	/**
+	 * PTRS, for rates of at least TABLE_LIMIT
+	 */
+	private int sampleRejection(SimRandom rng)
+	{
+		while(true)
+		{
+			double u = rng.nextDouble() - 0.5;
+			double v = rng.nextDouble();
+			double us = 0.5 - Math.abs(u);
+			int k = (int)Math.floor((2 * a / us + b) * u + rate + 0.43);
+			if(us >= 0.07 && v <= vr)
+			{
+				return k;
+			}
+			if(k < 0 || (us < 0.013 && v > us))
+			{
+				continue;
+			}
+			if(Math.log(v * invAlpha / (a / (us * us) + b)) <= -rate + k * logRate - logFactorial(k))
+			{
+				return k;
+			}
+		}
+	}
+
+	/**
+	 * @param rate the poisson rate
+	 * @param k the number of events
+	 * @return the probability of k events given the poisson rate
+	 */
+	public static double probability(double rate, int k)
+	{
+		if(k < 0) return 0;
+		if(rate == 0) return k == 0 ? 1 : 0;
+		return Math.exp(-rate + k * Math.log(rate) - logFactorial(k));
+	}
+
+	/**
+	 * @param k a non-negative integer
+	 * @return ln(k!), from a table for small k and Stirling's series otherwise
+	 */
+	public static double logFactorial(int k)
+	{
+		if(k < LOG_FACTORIAL.length)
+		{
+			return LOG_FACTORIAL[k];
+		}
+		double x = k + 1;
+		double inverse = 1 / x;
+		double inverse2 = inverse * inverse;
+		return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+				+ inverse * (1.0 / 12 - inverse2 * (1.0 / 360 - inverse2 / 1260));
+	}
+}
@@ -0,0 +1,104 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class tests the distribution produced by PoissonSampler
+ */
+public class PoissonSamplerTest {
+
+	/**
+	 * Draws many samples at the given rate and checks the sample mean and variance,
+	 * both of which should equal the rate.
+	 */
+	private static void checkMoments(double rate){
+		SimRandom rng = new SimRandom(55);
+		PoissonSampler sampler = new PoissonSampler(rate);
+		int n = 200000;
+		double sum = 0;
+		double sumSquares = 0;
+		for(int i=0; i<n; i++){
+			int k = sampler.sample(rng);
+			assertTrue(k >= 0);
+			sum += k;
+			sumSquares += (double)k * k;
+		}
+		double mean = sum / n;
+		double variance = sumSquares / n - mean * mean;
+		//allow 5 standard errors
+		double meanError = 5 * Math.sqrt(rate / n);
+		assertEquals(rate, mean, meanError);
+		assertEquals(rate, variance, Math.max(0.02, 0.03 * rate));
+	}
+	
+	@Test
+	public void testMomentsSmallRates(){
+		checkMoments(0.5);
+		checkMoments(2);
+		checkMoments(9.5);
+	}
+	
+	@Test
+	public void testMomentsLargeRates(){
+		checkMoments(10);
+		checkMoments(30);
+		checkMoments(1000);
+	}
+	
+	/**
+	 * Compares the sample frequencies against the probability mass function with a
+	 * chi-square statistic, on both sides of the table/rejection switch.
+	 */
+	@Test
+	public void testChiSquare(){
+		double[] rates = {2, 30};
+		for(double rate : rates){
+			SimRandom rng = new SimRandom(7);
+			PoissonSampler sampler = new PoissonSampler(rate);
+			int n = 100000;
+			int bins = (int)(rate * 3 + 10);
+			int[] observed = new int[bins + 1];
+			for(int i=0; i<n; i++){
+				observed[Math.min(sampler.sample(rng), bins)]++;
+			}
+			double chiSquare = 0;
+			int degrees = -1;
+			double tail = 1;
+			for(int k=0; k<=bins; k++){
+				double p = k < bins ? PoissonSampler.probability(rate, k) : tail;
+				tail -= p;
+				double expected = p * n;
+				//skip bins too sparse for the chi-square approximation
+				if(expected < 5) continue;
+				chiSquare += (observed[k] - expected) * (observed[k] - expected) / expected;
+				degrees++;
+			}
+			//well above the 99.9th percentile of chi-square for these degrees of freedom
+			assertTrue("chi-square " + chiSquare + " with " + degrees + " degrees at rate " + rate,
+					chiSquare < degrees + 6 * Math.sqrt(2 * degrees));
+		}
+	}
+	
+	/**
+	 * The old factorial overflowed a long past k=20, check probabilities stay sane there
+	 * and that they sum to one.
+	 */
+	@Test
+	public void testProbability(){
+		assertEquals(Math.exp(-2), World.poissonProbability(2, 0), 1e-12);
+		assertEquals(2 * Math.exp(-2), World.poissonProbability(2, 1), 1e-12);
+		double sum = 0;
+		for(int k=0; k<200; k++){
+			double p = World.poissonProbability(40, k);
+			assertTrue(p >= 0 && p <= 1);
+			sum += p;
+		}
+		assertEquals(1.0, sum, 1e-9);
+		assertEquals(0, World.poissonProbability(40, -1), 0);
+		assertEquals(1, World.poissonProbability(0, 0), 0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeRate(){
+		new PoissonSampler(-1);
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * an event sink that copies events into a preallocated ring buffer and lets a background
+ * thread write them to a CSV file, so the tick threads never format text or touch a stream.
+ * Any number of threads may record at once: each claims a slot with one atomic increment.
+ * When the buffer is full recorders wait for the writer rather than drop events.
+ */
+public class RingBufferEventSink implements EventSink {
+	private static final EventSink.Kind[] KINDS = EventSink.Kind.values();
+
+	private final int mask;
+	private final long[] ticks;
+	private final long[] uids;
+	private final byte[] kinds;
+	private final String[] types;
+	private final String[] strains;
+	private final int[] rows;
+	private final int[] cols;
+	//published.get(slot) is the sequence number of the event last written into that slot
+	private final AtomicLongArray published;
+	private final AtomicLong claimed = new AtomicLong();
+	private volatile long consumed = 0;
+	private final AtomicLong stalls = new AtomicLong();
+
+	private final Writer out;
+	private final Thread writer;
+	private volatile boolean closing = false;
+	private volatile IOException failure = null;
+
+	/**
+	 * open the file and start the writer thread
+	 * @param file the CSV file to write, replaced if it exists
+	 * @param capacity number of events the buffer holds, rounded up to a power of two
+	 * @throws IOException if the file can't be opened
+	 */
+	public RingBufferEventSink(File file, int capacity) throws IOException
+	{
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		mask = size - 1;
+		ticks = new long[size];
+		uids = new long[size];
+		kinds = new byte[size];
+		types = new String[size];
+		strains = new String[size];
+		rows = new int[size];
+		cols = new int[size];
+		published = new AtomicLongArray(size);
+		for(int i = 0; i < size; i++)
+		{
+			published.set(i, -1);
+		}
+		out = new BufferedWriter(new FileWriter(file), 1 << 16);
+		out.write("tick,event,type,uid,strain,row,col\n");
+		writer = new Thread("event-writer"){
+			@Override
+			public void run()
+			{
+				drain();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void record(Kind kind, long tick, long uid, String agentType, String strain, int row, int col)
+	{
+		long sequence = claimed.getAndIncrement();
+		if(sequence - consumed > mask)
+		{
+			stalls.incrementAndGet();
+			while(sequence - consumed > mask)
+			{
+				Thread.yield();
+			}
+		}
+		int slot = (int)(sequence & mask);
+		ticks[slot] = tick;
+		uids[slot] = uid;
+		kinds[slot] = (byte)kind.ordinal();
+		types[slot] = agentType;
+		strains[slot] = strain;
+		rows[slot] = row;
+		cols[slot] = col;
+		//publishing the sequence number makes the fields above visible to the writer
+		published.lazySet(slot, sequence);
+	}
+
+	/**
+	 * the writer thread's loop: write events in sequence order until closed and empty
+	 */
+	private void drain()
+	{
+		try
+		{
+			while(true)
+			{
+				long next = consumed;
+				int slot = (int)(next & mask);
+				if(published.get(slot) == next)
+				{
+					writeEvent(slot);
+					//frees the slot for recorders
+					consumed = next + 1;
+				}else if(closing && claimed.get() == next)
+				{
+					break;
+				}else{
+					out.flush();
+					LockSupport.parkNanos(100000);
+				}
+			}
+			out.close();
+		}catch(IOException ex)
+		{
+			failure = ex;
+			//keep freeing slots so recorders don't wait forever
+			while(!closing || consumed != claimed.get())
+			{
+				long next = consumed;
+				if(published.get((int)(next & mask)) == next) consumed = next + 1;
+				else LockSupport.parkNanos(100000);
+			}
+			try
+			{
+				out.close();
+			}catch(IOException closeFailure)
+			{
+				//the first failure is the one reported
+			}
+		}
+	}
+
+	/**
+	 * write one buffered event as a CSV line
+	 * @param slot the event's slot
+	 */
+	private void writeEvent(int slot) throws IOException
+	{
+		out.write(Long.toString(ticks[slot]));
+		out.write(',');
+		out.write(KINDS[kinds[slot]].name());
+		out.write(',');
+		out.write(types[slot]);
+		out.write(',');
+		out.write(Long.toString(uids[slot]));
+		out.write(',');
+		out.write(strains[slot]);
+		out.write(',');
+		out.write(Integer.toString(rows[slot]));
+		out.write(',');
+		out.write(Integer.toString(cols[slot]));
+		out.write('\n');
+		types[slot] = null;
+		strains[slot] = null;
+	}
+
+	/**
+	 * @return how many times a recorder found the buffer full and had to wait for the writer
+	 */
+	public long getStalls()
+	{
+		return stalls.get();
+	}
+
+	/**
+	 * @return the number of events recorded so far
+	 */
+	public long getRecorded()
+	{
+		return claimed.get();
+	}
+
+	/**
+	 * wait for the writer thread to write every recorded event, then close the file.
+	 * Nothing may be recorded after this is called
+	 * @throws IllegalStateException if writing the file failed
+	 */
+	@Override
+	public void close()
+	{
+		closing = true;
+		try
+		{
+			writer.join();
+		}catch(InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+		if(failure != null)
+		{
+			throw new IllegalStateException("writing the event log failed", failure);
+		}
+	}
+}
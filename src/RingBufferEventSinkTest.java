@@ -0,0 +1,58 @@
+import static org.junit.Assert.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import org.junit.Test;
+
+/**
+ * This class tests that RingBufferEventSink writes every event exactly once
+ */
+public class RingBufferEventSinkTest {
+
+	/**
+	 * Several threads record more events than the buffer holds, so recorders have to
+	 * wait for the writer; every event must still reach the file once.
+	 */
+	@Test
+	public void testConcurrentRecording() throws IOException, InterruptedException {
+		File file = File.createTempFile("events", ".csv");
+		file.deleteOnExit();
+		final RingBufferEventSink sink = new RingBufferEventSink(file, 64);
+		final int threads = 4;
+		final int perThread = 5000;
+		Thread[] recorders = new Thread[threads];
+		for(int t=0; t<threads; t++){
+			final int id = t;
+			recorders[t] = new Thread(){
+				@Override
+				public void run(){
+					for(int i=0; i<perThread; i++){
+						sink.record(EventSink.Kind.INFECTED, i, id * perThread + i, Human.type, "ACGT", id, i);
+					}
+				}
+			};
+			recorders[t].start();
+		}
+		for(Thread recorder : recorders){
+			recorder.join();
+		}
+		sink.close();
+		
+		boolean[] seen = new boolean[threads * perThread];
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		assertEquals("tick,event,type,uid,strain,row,col", in.readLine());
+		int lines = 0;
+		for(String line = in.readLine(); line != null; line = in.readLine()){
+			String[] fields = line.split(",");
+			assertEquals("INFECTED", fields[1]);
+			int uid = Integer.parseInt(fields[3]);
+			assertFalse(seen[uid]);
+			seen[uid] = true;
+			lines++;
+		}
+		in.close();
+		assertEquals(threads * perThread, lines);
+		assertEquals(threads * perThread, sink.getRecorded());
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+/**
+ * streaming mean, variance, minimum and maximum of a series of values (Welford's method),
+ * so the values themselves never have to be kept. Not thread safe.
+ */
+public class RunningStatistics {
+	private long count = 0;
+	private double mean = 0;
+	//sum of squared differences from the current mean
+	private double m2 = 0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * @param x the next value
+	 */
+	public void add(double x)
+	{
+		count++;
+		double delta = x - mean;
+		mean += delta / count;
+		m2 += delta * (x - mean);
+		min = Math.min(min, x);
+		max = Math.max(max, x);
+	}
+
+	/**
+	 * forget every value added so far
+	 */
+	public void clear()
+	{
+		count = 0;
+		mean = 0;
+		m2 = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * @return the number of values added
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the mean of the values, 0 if there are none
+	 */
+	public double getMean()
+	{
+		return mean;
+	}
+
+	/**
+	 * @return the sample variance of the values, 0 if there are fewer than two
+	 */
+	public double getVariance()
+	{
+		return count < 2 ? 0 : m2 / (count - 1);
+	}
+
+	/**
+	 * @return the sample standard deviation of the values
+	 */
+	public double getStandardDeviation()
+	{
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return half the width of the normal 95% confidence interval for the mean
+	 */
+	public double getConfidence95()
+	{
+		return count < 2 ? 0 : 1.96 * getStandardDeviation() / Math.sqrt(count);
+	}
+
+	/**
+	 * @return the smallest value, positive infinity if there are none
+	 */
+	public double getMin()
+	{
+		return min;
+	}
+
+	/**
+	 * @return the largest value, negative infinity if there are none
+	 */
+	public double getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * @return "mean +- confidence (min .. max, n)"
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("%.4f +- %.4f (%.4f .. %.4f, n=%d)", mean, getConfidence95(), min, max, count);
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * the model's clock: a tick count and the UTC time in whole epoch seconds at the start
+ * of the current tick. The hour of day and the day index are worked out once per tick
+ * in advance(), so agents can read them every tick for free. The start time is fixed,
+ * not the wall clock time, so a seeded run is the same whenever it is started
+ */
+public class SimClock {
+	//midnight UTC, 1 January 2012
+	public static final long DEFAULT_START = 1325376000L;
+	private static final long SECONDS_PER_DAY = 24 * 3600;
+
+	private final double stepSeconds;
+	private long startSeconds;
+	private long tick = 0;
+	private long epochSeconds;
+	private int hourOfDay;
+	private long day;
+
+	/**
+	 * @param stepSeconds the simulated seconds each tick advances the clock by
+	 * @param startSeconds the UTC time of tick 0 in epoch seconds
+	 */
+	public SimClock(double stepSeconds, long startSeconds)
+	{
+		this.stepSeconds = stepSeconds;
+		this.startSeconds = startSeconds;
+		update();
+	}
+
+	/**
+	 * move the clock to the start of the next tick
+	 */
+	public void advance()
+	{
+		tick++;
+		update();
+	}
+
+	/**
+	 * @param startSeconds the new UTC time of tick 0 in epoch seconds
+	 * @throws IllegalStateException if the clock has already advanced
+	 */
+	public void setStart(long startSeconds)
+	{
+		if(tick != 0)
+		{
+			throw new IllegalStateException("the clock has already started");
+		}
+		this.startSeconds = startSeconds;
+		update();
+	}
+
+	private void update()
+	{
+		epochSeconds = startSeconds + (long)Math.floor(tick * stepSeconds);
+		long days = floorDiv(epochSeconds, SECONDS_PER_DAY);
+		hourOfDay = (int)((epochSeconds - days * SECONDS_PER_DAY) / 3600);
+		day = days - floorDiv(startSeconds, SECONDS_PER_DAY);
+	}
+
+	private static long floorDiv(long a, long b)
+	{
+		long q = a / b;
+		return (a % b != 0 && (a < 0) != (b < 0)) ? q - 1 : q;
+	}
+
+	/**
+	 * @return the number of ticks since the start
+	 */
+	public long getTick()
+	{
+		return tick;
+	}
+
+	/**
+	 * @return the UTC time at the start of the current tick, in epoch seconds
+	 */
+	public long getEpochSeconds()
+	{
+		return epochSeconds;
+	}
+
+	/**
+	 * @return the simulated seconds since the start, at the start of the current tick
+	 */
+	public double getElapsedSeconds()
+	{
+		return tick * stepSeconds;
+	}
+
+	/**
+	 * @return the UTC hour of day, 0 to 23
+	 */
+	public int getHourOfDay()
+	{
+		return hourOfDay;
+	}
+
+	/**
+	 * @return the number of midnights passed since the start, 0 on the first day
+	 */
+	public long getDay()
+	{
+		return day;
+	}
+
+	/**
+	 * @return the current time as a UTC date and time
+	 */
+	@Override
+	public String toString()
+	{
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss 'UTC'");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(new Date(epochSeconds * 1000));
+	}
+}
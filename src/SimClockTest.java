@@ -0,0 +1,49 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class tests the SimClock class
+ */
+public class SimClockTest {
+
+	/**
+	 * hour of day and day index follow the ticks from a start time part way through a day
+	 */
+	@Test
+	public void testHourAndDay(){
+		SimClock clock = new SimClock(3600.0, SimClock.DEFAULT_START + 22 * 3600);
+		assertEquals(22, clock.getHourOfDay());
+		assertEquals(0, clock.getDay());
+		clock.advance();
+		clock.advance();
+		assertEquals(0, clock.getHourOfDay());
+		assertEquals(1, clock.getDay());
+		assertEquals(2 * 3600.0, clock.getElapsedSeconds(), 0);
+		assertEquals("2012-01-02 00:00:00 UTC", clock.toString());
+	}
+
+	/**
+	 * steps shorter than an hour and start times before 1970
+	 */
+	@Test
+	public void testShortStepsBeforeEpoch(){
+		SimClock clock = new SimClock(900.0, -3600);
+		assertEquals(23, clock.getHourOfDay());
+		for(int i = 0; i < 4; i++){
+			clock.advance();
+		}
+		assertEquals(0, clock.getHourOfDay());
+		assertEquals(1, clock.getDay());
+		assertEquals(0, clock.getEpochSeconds());
+	}
+
+	/**
+	 * the start can only be moved before the first tick
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testStartIsFixedOnceRunning(){
+		SimClock clock = new SimClock(3600.0, 0);
+		clock.advance();
+		clock.setStart(SimClock.DEFAULT_START);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+
+/**
+ * a small, unsynchronized random number generator (SplitMix64).
+ * The whole state is a single counter, so a stream can be derived directly from
+ * a key such as (seed, row, column, tick) instead of being shared between threads.
+ * Not thread safe: give each thread or partition its own instance.
+ */
+public class SimRandom {
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long state;
+
+	/**
+	 * @param seed the initial state
+	 */
+	public SimRandom(long seed)
+	{
+		this.state = seed;
+	}
+
+	/**
+	 * scramble the bits of a long (the SplitMix64 finalizer)
+	 * @param z the value to mix
+	 * @return a well distributed 64 bit hash of z
+	 */
+	public static long mix64(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * restart this generator at the stream identified by the given key,
+	 * the same key always gives the same sequence of numbers
+	 * @param seed the simulation seed
+	 * @param row the row of the lattice location that owns the stream
+	 * @param col the column of the lattice location that owns the stream
+	 * @param step the simulation step the stream is used for
+	 */
+	public void setStream(long seed, long row, long col, long step)
+	{
+		state = mix64(mix64(mix64(mix64(seed) + row) + col) + step);
+	}
+
+	/**
+	 * @return the current state, which can be handed back to setState to rewind the generator
+	 */
+	public long getState()
+	{
+		return state;
+	}
+
+	/**
+	 * @param state a state previously returned by getState
+	 */
+	public void setState(long state)
+	{
+		this.state = state;
+	}
+
+	/**
+	 * @return the next 64 random bits
+	 */
+	public long nextLong()
+	{
+		return mix64(state += GOLDEN_GAMMA);
+	}
+
+	/**
+	 * @return a random double between 0 (inclusive) and 1 (exclusive)
+	 */
+	public double nextDouble()
+	{
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @param bound the upper bound, must be positive
+	 * @return a random int between 0 (inclusive) and bound (exclusive)
+	 */
+	public int nextInt(int bound)
+	{
+		return (int)(((nextLong() >>> 32) * bound) >>> 32);
+	}
+
+	/**
+	 * @return a new generator whose sequence is independent of this one
+	 */
+	public SimRandom split()
+	{
+		return new SimRandom(mix64(nextLong()));
+	}
+}
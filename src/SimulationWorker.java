@@ -0,0 +1,122 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ticks a World on its own thread and hands WorldSnapshots to a reader, such as the GUI,
+ * through an AtomicReference. A snapshot is only taken once the reader has taken the last
+ * one, so ticks the reader doesn't see cost nothing extra and the world never waits for it.
+ * What the reader takes is the tick just after its previous take, not the newest one, so
+ * it can be up to one of the reader's frames old.
+ */
+public class SimulationWorker implements Runnable {
+	private final World world;
+	private final long maxTicks;
+	private final AtomicReference<WorldSnapshot> latest = new AtomicReference<WorldSnapshot>();
+	private volatile boolean running = true;
+	private Thread thread;
+
+	/**
+	 * @param world the world to tick, which no other thread may tick
+	 * @param maxTicks stop after this many ticks even if there are infections left
+	 */
+	public SimulationWorker(World world, long maxTicks)
+	{
+		this.world = world;
+		this.maxTicks = maxTicks;
+	}
+
+	/**
+	 * start ticking on a new daemon thread
+	 */
+	public synchronized void start()
+	{
+		if(thread != null)
+		{
+			throw new IllegalStateException("already started");
+		}
+		thread = new Thread(this, "simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * tick until there are no infections left, maxTicks is reached or stop is called.
+	 * The last snapshot is always published, marked finished
+	 */
+	@Override
+	public void run()
+	{
+		try
+		{
+			//the first tick places the initial infections, so always do at least one
+			long ticks = 0;
+			boolean more;
+			do
+			{
+				world.tick();
+				ticks++;
+				more = running && ticks < maxTicks && world.countInfections() > 0;
+				//the last tick is only published once, as the finished snapshot
+				if(more && latest.get() == null)
+				{
+					latest.set(new WorldSnapshot(world, false));
+				}
+			}while(more);
+		}finally{
+			latest.set(new WorldSnapshot(world, true));
+			World.setCurrent(null);
+		}
+	}
+
+	/**
+	 * @return the snapshot of the first tick after the caller's previous take, or null if the
+	 * worker hasn't got round to it yet
+	 */
+	public WorldSnapshot takeSnapshot()
+	{
+		return latest.getAndSet(null);
+	}
+
+	/**
+	 * ask the worker to stop after the current tick
+	 */
+	public void stop()
+	{
+		running = false;
+	}
+
+	/**
+	 * wait for the worker thread to finish
+	 * @throws InterruptedException if the calling thread is interrupted
+	 */
+	public void join() throws InterruptedException
+	{
+		Thread t;
+		synchronized(this)
+		{
+			t = thread;
+		}
+		if(t != null)
+		{
+			t.join();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class tests the SimulationWorker class
+ */
+public class SimulationWorkerTest {
+
+	/**
+	 * a reader polling while the worker ticks sees snapshots in tick order, ending with a
+	 * finished snapshot of the world's final state
+	 */
+	@Test
+	public void testSnapshots() throws InterruptedException {
+		World world = new World(30, 30, 3600.0, 0.5, 2, 21);
+		world.setEventSink(new NullEventSink());
+		world.introduceInfection("ACGT");
+		SimulationWorker worker = new SimulationWorker(world, 300);
+		worker.start();
+		long lastTick = 0;
+		int snapshots = 0;
+		WorldSnapshot snapshot;
+		do
+		{
+			snapshot = worker.takeSnapshot();
+			if(snapshot != null)
+			{
+				assertTrue(snapshot.getTick() > lastTick);
+				lastTick = snapshot.getTick();
+				snapshots++;
+			}
+			Thread.sleep(1);
+		}while(snapshot == null || !snapshot.isFinished());
+		worker.join();
+		assertNull(worker.takeSnapshot());
+		assertTrue(snapshots >= 1);
+		assertEquals(world.getTickCount(), snapshot.getTick());
+		assertEquals(world.countInfections(), snapshot.getInfected());
+		assertEquals(world.countRecovered(), snapshot.getRecovered());
+		for(int i = 0; i < world.getRows(); i++){
+			for(int j = 0; j < world.getColumns(); j++){
+				assertEquals(world.getLocation(i, j).getDisplayState(), snapshot.getState(i, j));
+			}
+		}
+	}
+
+	/**
+	 * stop ends the run early with a finished snapshot
+	 */
+	@Test
+	public void testStop() throws InterruptedException {
+		World world = new World(30, 30, 3600.0, 0.5, 2, 22);
+		world.setEventSink(new NullEventSink());
+		world.introduceInfection("ACGT");
+		SimulationWorker worker = new SimulationWorker(world, Long.MAX_VALUE);
+		worker.start();
+		worker.stop();
+		worker.join();
+		WorldSnapshot snapshot = worker.takeSnapshot();
+		assertTrue(snapshot.isFinished());
+		assertEquals(world.getTickCount(), snapshot.getTick());
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * interns strain names as small int IDs, 0 to MAX_STRAINS-1, shared by every World in
+ * the JVM. Agents keep their infections and immunities as bitsets of these IDs, see
+ * Agent.getInfectedMask, so strains compare by ID instead of by String identity
+ */
+public class StrainRegistry {
+	//one bit per strain in a long
+	public static final int MAX_STRAINS = 64;
+
+	private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	//copied on every registration, so readers need no lock
+	private static volatile String[] names = new String[0];
+
+	private StrainRegistry()
+	{
+	}
+
+	/**
+	 * @param name a strain name
+	 * @return the strain's ID, registering it if it is new
+	 * @throws IllegalStateException if MAX_STRAINS strains are already registered
+	 */
+	public static int id(String name)
+	{
+		Integer id = ids.get(name);
+		if(id != null)
+		{
+			return id;
+		}
+		synchronized(StrainRegistry.class)
+		{
+			id = ids.get(name);
+			if(id == null)
+			{
+				if(names.length == MAX_STRAINS)
+				{
+					throw new IllegalStateException("more than " + MAX_STRAINS + " strains");
+				}
+				id = names.length;
+				String[] grown = Arrays.copyOf(names, id + 1);
+				grown[id] = name;
+				names = grown;
+				ids.put(name, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * @param id a registered strain ID
+	 * @return the strain's name, the same String object for every call
+	 */
+	public static String name(int id)
+	{
+		return names[id];
+	}
+
+	/**
+	 * @return the number of registered strains
+	 */
+	public static int size()
+	{
+		return names.length;
+	}
+}
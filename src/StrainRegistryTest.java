@@ -0,0 +1,46 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * This class tests the StrainRegistry and the per agent strain bitsets
+ */
+public class StrainRegistryTest {
+
+	/**
+	 * equal names get the same ID and the same String back, whichever object was passed in
+	 */
+	@Test
+	public void testInterning(){
+		int id = StrainRegistry.id("DENV-1");
+		assertEquals(id, StrainRegistry.id(new String("DENV-1")));
+		assertSame(StrainRegistry.name(id), StrainRegistry.name(StrainRegistry.id(new String("DENV-1"))));
+		assertNotEquals(id, StrainRegistry.id("DENV-2"));
+	}
+
+	/**
+	 * an agent can carry several serotypes at once and is immune to the ones it recovered from
+	 */
+	@Test
+	public void testSerotypes(){
+		World world = new World(2, 2, 3600.0, 0, 0, 1);
+		world.setEventSink(new NullEventSink());
+		Human human = new Human(0, 0);
+		assertTrue(human.isSusceptible());
+		human.recieveDisease("DENV-1");
+		human.recieveDisease(new String("DENV-1"));
+		human.recieveDisease("DENV-2");
+		assertEquals(2, human.infections.length);
+		long both = (1L << StrainRegistry.id("DENV-1")) | (1L << StrainRegistry.id("DENV-2"));
+		assertEquals(both, human.getInfectedMask());
+		for(Disease disease : human.infections){
+			human.setDiseaseState(disease, Disease.State.RECOVERED);
+		}
+		assertTrue(human.isRecovered());
+		assertEquals(both, human.getImmunityMask());
+		human.recieveDisease("DENV-2");
+		assertFalse(human.isInfected());
+		human.recieveDisease("DENV-3");
+		assertTrue(human.isInfected());
+		assertEquals("DENV-3", human.getStrain());
+	}
+}
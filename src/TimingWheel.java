@@ -0,0 +1,166 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * a hashed timing wheel of agent events keyed by the tick they are due in, such as a
+ * human's recovery or a mosquito's death of old age. Scheduling and firing an event are
+ * O(1); events further ahead than the wheel is long go round it more than once.
+ * Events can be scheduled from several tick threads at once, they are fired by the
+ * thread that runs World.tick, in UID order so the result does not depend on which
+ * thread scheduled them first. Each event remembers the UID its agent had when it was
+ * scheduled; an agent reissued by a MosquitoPool has a new one, so the events of its
+ * previous life are dropped.
+ */
+public class TimingWheel {
+	private static final Comparator<Agent> BY_UID = new Comparator<Agent>(){
+		@Override
+		public int compare(Agent a, Agent b)
+		{
+			return a.getUID() < b.getUID() ? -1 : (a.getUID() == b.getUID() ? 0 : 1);
+		}
+	};
+
+	private final Agent[][] agents;
+	private final long[][] due;
+	private final long[][] uids;
+	private final int[] sizes;
+	private final int mask;
+	private int size = 0;
+	//events taken out of a slot while they are fired
+	private Agent[] firing = new Agent[16];
+
+	/**
+	 * @param horizon the number of ticks ahead most events are scheduled, rounded up to a power of 2
+	 */
+	public TimingWheel(int horizon)
+	{
+		int slots = Integer.highestOneBit(Math.max(2, horizon - 1)) << 1;
+		agents = new Agent[slots][];
+		due = new long[slots][];
+		uids = new long[slots][];
+		sizes = new int[slots];
+		mask = slots - 1;
+	}
+
+	/**
+	 * @param agent the agent the event belongs to, see Agent.onScheduledEvent
+	 * @param tick the tick the event is due in
+	 */
+	public synchronized void schedule(Agent agent, long tick)
+	{
+		int slot = (int)(tick & mask);
+		int n = sizes[slot];
+		if(agents[slot] == null)
+		{
+			agents[slot] = new Agent[4];
+			due[slot] = new long[4];
+			uids[slot] = new long[4];
+		}else if(n == agents[slot].length)
+		{
+			agents[slot] = Arrays.copyOf(agents[slot], n * 2);
+			due[slot] = Arrays.copyOf(due[slot], n * 2);
+			uids[slot] = Arrays.copyOf(uids[slot], n * 2);
+		}
+		agents[slot][n] = agent;
+		due[slot][n] = tick;
+		uids[slot][n] = agent.getUID();
+		sizes[slot] = n + 1;
+		size++;
+	}
+
+	/**
+	 * fire every event due in a tick. Must be called once for each tick, in order
+	 * @param tick the tick
+	 */
+	public void fire(long tick)
+	{
+		int count = 0;
+		synchronized(this)
+		{
+			int slot = (int)(tick & mask);
+			Agent[] slotAgents = agents[slot];
+			long[] slotDue = due[slot];
+			long[] slotUids = uids[slot];
+			int kept = 0;
+			int n = sizes[slot];
+			for(int i = 0; i < n; i++)
+			{
+				if(slotDue[i] == tick)
+				{
+					if(slotUids[i] != slotAgents[i].getUID())
+					{
+						//scheduled in the agent's previous life
+						continue;
+					}
+					if(count == firing.length)
+					{
+						firing = Arrays.copyOf(firing, count * 2);
+					}
+					firing[count++] = slotAgents[i];
+				}else{
+					//due on a later turn of the wheel
+					slotAgents[kept] = slotAgents[i];
+					slotDue[kept] = slotDue[i];
+					slotUids[kept] = slotUids[i];
+					kept++;
+				}
+			}
+			if(slotAgents != null)
+			{
+				Arrays.fill(slotAgents, kept, n, null);
+			}
+			sizes[slot] = kept;
+			size -= n - kept;
+		}
+		Arrays.sort(firing, 0, count, BY_UID);
+		for(int i = 0; i < count; i++)
+		{
+			Agent agent = firing[i];
+			firing[i] = null;
+			agent.onScheduledEvent();
+		}
+	}
+
+	/**
+	 * drop every scheduled event
+	 */
+	public synchronized void clear()
+	{
+		for(int slot = 0; slot < sizes.length; slot++)
+		{
+			if(agents[slot] != null)
+			{
+				Arrays.fill(agents[slot], 0, sizes[slot], null);
+			}
+			sizes[slot] = 0;
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return the number of events waiting to fire
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+}
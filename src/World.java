@@ -1,8 +1,12 @@
-import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Rectangle;
-import java.util.Calendar;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
  *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
@@ -25,49 +29,308 @@ import java.util.Random;
  ****************************************************************************************/
 /**
  * a class representing the simulated world, contains the lattice environment
- * maintains the time between simulation frames, and the current time within the model
+ * maintains the time between simulation frames, and the current time within the model.
+ * Every World has its own lattice, clock, seed, tallies and agent UIDs, so several
+ * can run side by side in one JVM (see EnsembleRunner). Agents find their world
+ * through current(), which is set on the thread that constructs or ticks a World.
+ * A World can also own just one domain of a Decomposition of the lattice, see DistributedRunner;
+ * it then trades the agents that cross its border through a MigrationChannel
  */
 public class World {
-	private static Environment[][] lattice;
+	private final ChunkedLattice lattice;
+	private final int rows;
+	private final int cols;
+	//the part of the lattice this world populates and ticks, all of it unless distributed
+	private final Decomposition decomposition;
+	private final int part;
+	private MigrationChannel migration = null;
+	private long migrants = 0;
 	double timeStepSeconds;
-	private static Calendar currTime = Calendar.getInstance();
-	private static Random num = new Random();
+	private AtomicLong agentUpdates = new AtomicLong();
+	private ForkJoinPool pool = null;
+	private ArrayEngineAdapter arrayEngine = null;
+	private boolean mosquitoCompartments = false;
+	private boolean batchedBites = false;
+	private final SimClock clock;
+	private final long seed;
+	private LevyFlight levyFlight = LevyFlight.DEFAULT;
+	private EventSink eventSink = new ConsoleEventSink();
+	//number of placed agents in each Disease.State, indexed by ordinal
+	private final AtomicIntegerArray tally = new AtomicIntegerArray(Disease.State.values().length);
+	//atomic because new mosquitoes can be created by several tick threads at once.
+	//Each part of a decomposition takes every getParts()-th UID, so UIDs are unique across all of them
+	private final AtomicLong nextUID;
+	//deaths of old age, fired at the start of the tick they are due in
+	private final TimingWheel timeline;
+	//recoveries, fired at the end of the tick they are due in, once its bites are done
+	private final TimingWheel afterBites;
+	//dead mosquito agents waiting to be reissued
+	private MosquitoPool mosquitoPool = new MosquitoPool(MOSQUITO_POOL_CAPACITY);
+	//locations that hold agents or have agents about to enter, the only ones tick() visits
+	private final CellSet active;
+	//the active set as it was at the start of this tick's location phase and its entrance phase
+	private long[] ticking;
+	private long[] entering;
+	//draws the lattice for render(), created on its first call and reused after that
+	private LatticeRenderer renderer;
+	
+	//the seed used by worlds constructed without one, see seedRand
+	private static volatile long defaultSeed = System.nanoTime();
+	//the world being constructed or ticked on each thread
+	private static final ThreadLocal<World> current = new ThreadLocal<World>();
+	//each thread draws from its own generator, so there is no shared state to contend on
+	private static final ThreadLocal<SimRandom> stream = new ThreadLocal<SimRandom>(){
+		@Override
+		protected SimRandom initialValue()
+		{
+			return new SimRandom(SimRandom.mix64(defaultSeed + Thread.currentThread().getId()));
+		}
+	};
+	//step keys for the streams that are not tied to a tick
+	private static final long CONSTRUCTION_STEP = -1;
+	private static final long MAIN_STEP = -2;
+	private static final long COMPARTMENT_STEP = -3;
+	//the default number of dead mosquitoes kept for reuse
+	public static final int MOSQUITO_POOL_CAPACITY = 1 << 14;
+	//chunks of the lattice are released after a simulated day without agents
+	private static final double CHUNK_IDLE_SECONDS = 24 * 3600;
+	//agents born while a location is ticked get UIDs from here up, above any the counter
+	//hands out, see birthUID
+	private static final long FIRST_BIRTH_UID = 1L << 62;
+	//the low bits of a birth UID count the births in one location in one tick
+	private static final int BIRTH_BITS = 16;
+	//the location each thread is ticking, see tickRows
+	private static final ThreadLocal<Birthplace> birthplace = new ThreadLocal<Birthplace>(){
+		@Override
+		protected Birthplace initialValue()
+		{
+			return new Birthplace();
+		}
+	};
+	
+	/**
+	 * the cell a thread is ticking and how many agents were born in it so far this tick
+	 */
+	private static final class Birthplace {
+		//row * cols + col, or -1 while the thread isn't ticking a location
+		long cell = -1;
+		int births = 0;
+	}
 	
 	/**
+	 * draws from the calling thread's stream. While a location is being ticked that stream
+	 * is keyed by (seed, row, column, tick), so results do not depend on which thread
+	 * ticked the location or in what order
 	 * @return a random double between 0 and 1
 	 */
 	public static double randNum(){
-		return num.nextDouble();
+		return stream.get().nextDouble();
 	}
 	
 	/**
-	 * Seeds the random number, for unit testing purposes.
+	 * @return the calling thread's random number stream
+	 */
+	public static SimRandom getStream(){
+		return stream.get();
+	}
+	
+	/**
+	 * Seeds the random number, for unit testing purposes. Worlds constructed afterwards
+	 * without an explicit seed use this one
 	 * @param x the number the seed will be set to
 	 */
 	public static void seedRand(int x){
-		num.setSeed(x);
+		defaultSeed = x;
+		stream.get().setStream(x, -1, -1, MAIN_STEP);
+	}
+	
+	/**
+	 * @return the world most recently constructed or ticked on the calling thread,
+	 * or null if there is none. Agents and locations created on this thread belong to it
+	 */
+	public static World current()
+	{
+		return current.get();
+	}
+	
+	/**
+	 * make a world the calling thread's current world, or forget it with null
+	 * so a finished world can be garbage collected
+	 * @param world the world, or null
+	 */
+	static void setCurrent(World world)
+	{
+		if(world == null)
+		{
+			current.remove();
+		}else{
+			current.set(world);
+		}
+	}
+	
+	/**
+	 * switch the calling thread's stream to the one owned by a lattice location for the current tick
+	 * @param row the location's row
+	 * @param col the location's column
+	 */
+	void useLocationStream(int row, int col){
+		stream.get().setStream(seed, row, col, clock.getTick());
 	}
 	
 	/**
-	 * @return the current model time
+	 * called by a location when an agent enters it, so the next tick visits it
+	 * @param row the location's row
+	 * @param col the location's column
 	 */
-	public static Calendar getTime()
+	void activate(int row, int col)
 	{
-		return currTime;
+		if(active.add(row * cols + col))
+		{
+			lattice.activated(row, col);
+		}
 	}
 	
 	/**
-	 * computes the factorial of input k
-	 * @param k this function will compute the factorial of k, as in k!
-	 * @return k! as long int
+	 * @param row a location's row
+	 * @param col a location's column
+	 * @return the age its reserve mosquito starts with, the first number of its construction
+	 * stream, so it is the same whenever the location is (re)allocated
 	 */
-	private static long factorial(long k)
+	double initialReserveAge(int row, int col)
 	{
-		if(k < 1) return 1;
-		else
+		SimRandom rng = new SimRandom(0);
+		rng.setStream(seed, row, col, CONSTRUCTION_STEP);
+		return rng.nextDouble() * Mosquito.lifespan_max;
+	}
+	
+	/**
+	 * @return the number of locations the next tick will visit
+	 */
+	public int getActiveLocations()
+	{
+		return active.count();
+	}
+	
+	/**
+	 * @return the next UID for an agent in this world. Agents born while the calling thread
+	 * ticks a location get one derived from the location and the tick instead of the next
+	 * one off the counter, so they get the same UIDs whichever thread ticks the location
+	 */
+	long nextUID()
+	{
+		Birthplace here = birthplace.get();
+		if(here.cell >= 0)
 		{
-			return factorial(k-1) * k;
+			return birthUID(here.cell, here.births++);
 		}
+		return nextUID.getAndAdd(decomposition.getParts());
+	}
+	
+	/**
+	 * UIDs of agents born during a tick, in order of tick, then cell, then birth. A cell
+	 * belongs to one part of a decomposition, so the parts don't need to take turns
+	 * @param cell the cell the agent was born in, row * cols + col
+	 * @param birth how many agents were born in the cell before it this tick
+	 * @return the UID
+	 */
+	private long birthUID(long cell, int birth)
+	{
+		long key = clock.getTick() * ((long)rows * cols) + cell;
+		if(birth >= 1 << BIRTH_BITS || key >= 1L << (62 - BIRTH_BITS))
+		{
+			throw new IllegalStateException("no birth UID left for birth " + birth + " in cell " + cell + " of tick " + clock.getTick());
+		}
+		return FIRST_BIRTH_UID + (key << BIRTH_BITS) + birth;
+	}
+	
+	/**
+	 * @return the simulated seconds since the world was constructed, at the start of the current tick
+	 */
+	public double getElapsedSeconds()
+	{
+		return clock.getElapsedSeconds();
+	}
+	
+	/**
+	 * @return the simulated seconds each tick advances the clock by
+	 */
+	public double getTimeStep()
+	{
+		return timeStepSeconds;
+	}
+	
+	/**
+	 * @param seconds a time on the getElapsedSeconds clock
+	 * @return the first tick that ends after that time, but no earlier than the next tick
+	 */
+	long tickEndingAfter(double seconds)
+	{
+		return Math.max(clock.getTick() + 1, (long)Math.floor(seconds / timeStepSeconds));
+	}
+	
+	/**
+	 * have agent.onScheduledEvent() called at the start of a tick
+	 * @param agent the agent
+	 * @param tick the tick
+	 */
+	void schedule(Agent agent, long tick)
+	{
+		timeline.schedule(agent, tick);
+	}
+	
+	/**
+	 * have agent.onScheduledEvent() called at the end of a tick, after every agent has
+	 * moved and bitten in it
+	 * @param agent the agent
+	 * @param tick the tick
+	 */
+	void scheduleAfterBites(Agent agent, long tick)
+	{
+		afterBites.schedule(agent, tick);
+	}
+	
+	/**
+	 * @return where this world's dead mosquito agents wait to be reissued
+	 */
+	public MosquitoPool getMosquitoPool()
+	{
+		return mosquitoPool;
+	}
+	
+	/**
+	 * replace the mosquito pool, e.g. with one of a different capacity. Must not be
+	 * called while the world is ticking
+	 * @param pool the new pool
+	 */
+	public void setMosquitoPool(MosquitoPool pool)
+	{
+		mosquitoPool = pool;
+	}
+	
+	/**
+	 * @return the number of recoveries and deaths waiting to happen
+	 */
+	public int getScheduledEvents()
+	{
+		return timeline.size() + afterBites.size();
+	}
+	
+	/**
+	 * @return the model's clock, which gives the current model time
+	 */
+	public SimClock getClock()
+	{
+		return clock;
+	}
+	
+	/**
+	 * set the model time of the first tick, the default is SimClock.DEFAULT_START
+	 * @param epochSeconds UTC time in seconds since 1970
+	 * @throws IllegalStateException if the world has already ticked
+	 */
+	public void setStartTime(long epochSeconds)
+	{
+		clock.setStart(epochSeconds);
 	}
 	
 	/**
@@ -78,18 +341,9 @@ public class World {
 	 */
 	public static double poissonProbability(double rate, int k)
 	{
-		double prob = 0;
-		prob = (Math.exp(-rate)* Math.pow(rate,k)) / factorial(k);
-		return prob;
-		
+		return PoissonSampler.probability(rate, k);
 	}
-	/*
-	 * for sampling how many statistical events happen within one time period given some average rate
-	 * see http://en.wikipedia.org/wiki/Poisson_process
-	 * @param rate is the poisson rate
-	 * returns the number of events
-	 * 
-	 */
+	
 	/**
 	 * for sampling how many statistical events happen within one time period given some average rate
 	 * see http://en.wikipedia.org/wiki/Poisson_process
@@ -98,17 +352,23 @@ public class World {
 	 */
 	public int samplePoisson(double rate)
 	{
-		double sample =  World.randNum();
-		int k = 0;
-		while(sample < poissonProbability(rate,k))
-		{
-			k++;
-		}
-		return k;
+		return samplePoisson(rate, stream.get());
 	}
 	
 	/**
-	 * a constructor for the world, instantiates a 2D environment array which extends to input rows/columns
+	 * sample a poisson distributed number of events from the given stream
+	 * @param rate the poisson rate
+	 * @param rng the random number stream to draw from
+	 * @return the number of events sampled given the current rate
+	 */
+	public static int samplePoisson(double rate, SimRandom rng)
+	{
+		return PoissonSampler.forRate(rate).sample(rng);
+	}
+	
+	/**
+	 * a constructor for the world, instantiates a 2D environment array which extends to input rows/columns.
+	 * The world is seeded with the last value given to seedRand
 	 * @param rows how many rows the world has
 	 * @param cols how many columns the world has
 	 * @param timeStepSeconds the time between simulation steps
@@ -116,32 +376,87 @@ public class World {
 	 * @param averageHumanDensity a number representing the human density in the environment
 	 */
 	public World(int rows, int cols, double timeStepSeconds, double averageMosquitoDensity, double averageHumanDensity){
+		this(rows, cols, timeStepSeconds, averageMosquitoDensity, averageHumanDensity, defaultSeed);
+	}
+	
+	/**
+	 * a constructor for a world with its own seed. The new world becomes the calling thread's
+	 * current world, and the calling thread's stream is left at the start of the world's
+	 * main stream so what the caller does next (e.g. introduceInfection) depends only on the seed
+	 * @param rows how many rows the world has
+	 * @param cols how many columns the world has
+	 * @param timeStepSeconds the time between simulation steps
+	 * @param averageMosquitoDensity a number representing the mosquito density in the environment
+	 * @param averageHumanDensity a number representing the human density in the environment
+	 * @param seed the seed all of this world's random number streams are derived from
+	 */
+	public World(int rows, int cols, double timeStepSeconds, double averageMosquitoDensity, double averageHumanDensity, long seed){
+		this(rows, cols, timeStepSeconds, averageMosquitoDensity, averageHumanDensity, seed, new Decomposition(rows, cols, 1), 0);
+	}
+	
+	/**
+	 * a constructor for a world that owns one domain of a lattice, with the same seed as
+	 * the worlds that own the others. Only the locations in the domain are populated, each
+	 * from its own stream, so together the worlds start with the same population as a single
+	 * world with that seed
+	 * @param rows how many rows the whole lattice has
+	 * @param cols how many columns the whole lattice has
+	 * @param timeStepSeconds the time between simulation steps
+	 * @param averageMosquitoDensity a number representing the mosquito density in the environment
+	 * @param averageHumanDensity a number representing the human density in the environment
+	 * @param seed the seed all of this world's random number streams are derived from
+	 * @param decomposition how the lattice is split, for rows x cols
+	 * @param part the domain this world owns
+	 */
+	public World(int rows, int cols, double timeStepSeconds, double averageMosquitoDensity, double averageHumanDensity, long seed,
+			Decomposition decomposition, int part){
+		if(part < 0 || part >= decomposition.getParts())
+		{
+			throw new IllegalArgumentException("no part " + part + " in " + decomposition.getParts() + " parts");
+		}
+		this.decomposition = decomposition;
+		this.part = part;
+		nextUID = new AtomicLong(part + 1);
 		this.timeStepSeconds = timeStepSeconds;
+		this.seed = seed;
+		clock = new SimClock(timeStepSeconds, SimClock.DEFAULT_START);
+		this.rows = rows;
+		this.cols = cols;
+		lattice = new ChunkedLattice(this, rows, cols, averageMosquitoDensity);
+		active = new CellSet(rows * cols);
+		double horizon = Math.max(Human.infectious_period, Mosquito.lifespan_max) / timeStepSeconds;
+		timeline = new TimingWheel((int)Math.min(1 << 16, Math.ceil(horizon) + 2));
+		afterBites = new TimingWheel((int)Math.min(1 << 16, Math.ceil(horizon) + 2));
+		setCurrent(this);
 		
-		lattice = new Environment[rows][cols];
-		
-		for(int i = 0; i< rows; i++){
-			for(int j = 0; j < cols; j++){
-				lattice[i][j] = new Environment(i,j,averageMosquitoDensity);
-				for(int numHumans = samplePoisson(averageHumanDensity); numHumans > 0; numHumans--)
+		//each location is populated from its own stream
+		SimRandom callerStream = stream.get();
+		PoissonSampler residents = PoissonSampler.forRate(averageHumanDensity);
+		for(int i = decomposition.getFirstRow(part); i < decomposition.getEndRow(part); i++){
+			for(int j = decomposition.getFirstColumn(part); j < decomposition.getEndColumn(part); j++){
+				callerStream.setStream(seed, i, j, CONSTRUCTION_STEP);
+				//the first number is the reserve mosquito's age, see initialReserveAge
+				callerStream.nextLong();
+				for(int numHumans = residents.sample(callerStream); numHumans > 0; numHumans--)
 				{
 					Human resident = new Human(i,j);
-					lattice[i][j].enter(resident);
+					lattice.get(i, j).enter(resident);
 				}
 			}
 		}
+		callerStream.setStream(seed, -1, -1, MAIN_STEP);
 	}
 	
 	/*
 	 * @return an environment at row, col in the lattice. may return null if called before a world is constructed
 	 */
 	/**
-	 * get the environment in the specified location
+	 * get the environment in the specified location, allocating it if it isn't already
 	 * @param row the environment's row
 	 * @param col the environment's column
 	 * @return the environment at row, col in the lattice. may return null if called before a world is constructed
 	 */
-	public static Environment getLocation(int row, int col)
+	public Environment getLocation(int row, int col)
 	{
 		
 		if(row < 0){
@@ -151,60 +466,535 @@ public class World {
 		{
 			col = 0;
 		}
-		if(row >= lattice.length)
+		if(row >= rows)
 		{
-			row = lattice.length - 1;
+			row = rows - 1;
 		}
-		if (col >= lattice[0].length)
+		if (col >= cols)
 		{
-			col = lattice[0].length - 1;
+			col = cols - 1;
 		}
-		return lattice[row][col];
+		return lattice.get(row, col);
+	}
+	
+	/**
+	 * get the environment in the specified location only if it is allocated, for looking
+	 * over the lattice without allocating all of it
+	 * @param row the environment's row, between 0 and getRows()-1
+	 * @param col the environment's column, between 0 and getColumns()-1
+	 * @return the environment at row, col, or null if no agent has been there for a while
+	 */
+	public Environment findLocation(int row, int col)
+	{
+		return lattice.find(row, col);
+	}
+	
+	/**
+	 * @param row a row
+	 * @param col a column
+	 * @return true if the location is in this world's domain
+	 */
+	public boolean owns(int row, int col)
+	{
+		return decomposition.contains(part, row, col);
+	}
+	
+	/**
+	 * @return how the lattice is split between worlds, a single part unless distributed
+	 */
+	public Decomposition getDecomposition()
+	{
+		return decomposition;
+	}
+	
+	/**
+	 * @return the domain of the decomposition this world owns
+	 */
+	public int getPart()
+	{
+		return part;
+	}
+	
+	/**
+	 * trade agents that cross this world's border with the worlds that own the rest of the
+	 * lattice. Without a channel agents can move anywhere in the lattice
+	 * @param channel the channel, or null
+	 */
+	public void setMigrationChannel(MigrationChannel channel)
+	{
+		migration = channel;
+	}
+	
+	/**
+	 * @return the number of agents that have moved out of this world's domain
+	 */
+	public long getMigrants()
+	{
+		return migrants;
+	}
+	
+	/**
+	 * @return the lattice's chunks, see ChunkedLattice
+	 */
+	public ChunkedLattice getLattice()
+	{
+		return lattice;
+	}
+	
+	/**
+	 * @return the levy flight agents use to pick where to move
+	 */
+	public LevyFlight getLevyFlight()
+	{
+		return levyFlight;
+	}
+	
+	/**
+	 * @param flight the levy flight agents use to pick where to move, including how
+	 * jumps off the edge of the lattice are handled
+	 */
+	public void setLevyFlight(LevyFlight flight)
+	{
+		levyFlight = flight;
+	}
+	
+	/**
+	 * @return where agents send their infection, recovery and death events
+	 */
+	public EventSink getEventSink()
+	{
+		return eventSink;
+	}
+	
+	/**
+	 * choose where agents send their events; the default prints them to System.out
+	 * @param sink the new event sink
+	 */
+	public void setEventSink(EventSink sink)
+	{
+		eventSink = sink;
 	}
 	
 	/**
 	 * get a random lattice location
 	 * @return the randomly chosen environment
 	 */
-	public static Environment getRandomLocation()
+	public Environment getRandomLocation()
+	{
+		int randRow = (int) (rows * randNum());
+		int randCol = (int) (cols * randNum());
+		return getLocation(randRow, randCol);
+	}
+	/**
+	 * set how many threads tick() uses. With more than one thread the lattice is split into
+	 * bands of rows that are processed on a fork-join pool
+	 * @param threads the number of worker threads, 1 for the serial engine
+	 */
+	public void setParallelism(int threads)
+	{
+		if(threads < 1)
+		{
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		if(pool != null)
+		{
+			pool.shutdown();
+			pool = null;
+		}
+		if(threads > 1)
+		{
+			pool = new ForkJoinPool(threads);
+		}
+	}
+	
+	/**
+	 * @return the number of threads used by tick()
+	 */
+	public int getParallelism()
+	{
+		return pool == null ? 1 : pool.getParallelism();
+	}
+	
+	/**
+	 * switch between the object engine (Environment, Human and Mosquito objects) and the
+	 * struct-of-arrays ArrayEngine. Switching back copies the engine's state into the lattice
+	 * @param enable true to run tick() on an ArrayEngine loaded from the current lattice
+	 */
+	public void useArrayEngine(boolean enable)
+	{
+		setCurrent(this);
+		if(enable && mosquitoCompartments)
+		{
+			throw new IllegalStateException("the ArrayEngine does not support mosquito compartments");
+		}
+		if(enable && decomposition.getParts() > 1)
+		{
+			throw new IllegalStateException("the ArrayEngine does not support decomposed lattices");
+		}
+		if(enable && arrayEngine == null)
+		{
+			arrayEngine = new ArrayEngineAdapter(this, timeStepSeconds);
+		}else if(!enable && arrayEngine != null)
+		{
+			arrayEngine.store();
+			arrayEngine = null;
+			//the timelines stood still while the engine ran
+			timeline.clear();
+			afterBites.clear();
+			for(int c = 0; c < lattice.getChunkCount(); c++){
+				Environment[] chunk = lattice.getChunk(c);
+				for(int i = 0; chunk != null && i < chunk.length; i++){
+					if(chunk[i] != null) chunk[i].scheduleEvents();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * switch between mosquitoes as individual Mosquito agents and mosquitoes as per location
+	 * counts (see MosquitoCompartments). With compartments each location holds about its
+	 * mosquito density of mosquitoes, bites are sampled from the counts, and only humans are
+	 * agents. Mosquito agents that already exist live out their lives as agents
+	 * @param enable true to keep mosquitoes as counts
+	 */
+	public void useMosquitoCompartments(boolean enable)
+	{
+		if(arrayEngine != null)
+		{
+			throw new IllegalStateException("the ArrayEngine does not support mosquito compartments");
+		}
+		mosquitoCompartments = enable;
+		//each location's compartments are filled from its own stream
+		SimRandom callerStream = stream.get();
+		long callerState = callerStream.getState();
+		for(int i = decomposition.getFirstRow(part); i < decomposition.getEndRow(part); i++){
+			for(int j = decomposition.getFirstColumn(part); j < decomposition.getEndColumn(part); j++){
+				Environment location = enable ? lattice.get(i, j) : lattice.find(i, j);
+				if(location == null) continue;
+				callerStream.setStream(seed, i, j, COMPARTMENT_STEP);
+				location.useMosquitoCompartments(enable, callerStream);
+				//compartments age and emerge everywhere, not just where there are agents
+				activate(i, j);
+			}
+		}
+		callerStream.setState(callerState);
+	}
+	
+	/**
+	 * @return true if mosquitoes are kept as per location counts
+	 */
+	public boolean usesMosquitoCompartments()
+	{
+		return mosquitoCompartments;
+	}
+	
+	/**
+	 * switch between one random draw per human and per mosquito agent to decide who is
+	 * bitten and who bites, and drawing the number of bites at each location from a
+	 * binomial distribution and then picking that many distinct humans or mosquitoes.
+	 * Both give every human and mosquito the same chances; the batched bites take one
+	 * draw per location plus a few per bite, but not the same ones, so runs differ from
+	 * unbatched ones
+	 * @param enable true to batch the bites
+	 */
+	public void useBatchedBites(boolean enable)
 	{
-		int randRow = (int) (lattice.length * World.randNum());
-		int randCol = (int) (lattice[randRow].length * World.randNum());
-		return lattice[randRow][randCol];
+		batchedBites = enable;
 	}
+	
+	/**
+	 * @return true if bites are sampled per location, see useBatchedBites
+	 */
+	public boolean usesBatchedBites()
+	{
+		return batchedBites;
+	}
+	
+	/**
+	 * count the mosquitoes kept as per location counts
+	 * @param state SUSCEPTIBLE or INFECTED
+	 * @return the number of mosquitoes in that state over the whole lattice, 0 without compartments
+	 */
+	public long countCompartmentMosquitoes(Disease.State state)
+	{
+		long count = 0;
+		for(int c = 0; c < lattice.getChunkCount(); c++){
+			Environment[] chunk = lattice.getChunk(c);
+			for(int i = 0; chunk != null && i < chunk.length; i++){
+				MosquitoCompartments mosquitoes = chunk[i] == null ? null : chunk[i].getMosquitoCompartments();
+				if(mosquitoes != null)
+				{
+					count += state == Disease.State.INFECTED ? mosquitoes.getInfected() : mosquitoes.getSusceptible();
+				}
+			}
+		}
+		return count;
+	}
+	
 	/**
 	 * advance the simulation	 
 	 */
 	public void tick()
 	{
-		for(int i = 0; i< lattice.length; i++){
-			for(int j = 0; j < lattice[i].length; j++){
-				lattice[i][j].tick(timeStepSeconds);
+		setCurrent(this);
+		if(arrayEngine != null)
+		{
+			ArrayEngine engine = arrayEngine.getEngine();
+			agentUpdates.addAndGet(engine.getHumanCount() + engine.getMosquitoCount());
+			engine.tick(clock.getTick(), clock.getHourOfDay());
+			clock.advance();
+			return;
+		}
+		timeline.fire(clock.getTick());
+		//ticking locations on this thread switches its stream, so put it back afterwards
+		SimRandom callerStream = stream.get();
+		long callerState = callerStream.getState();
+		//agents can only exit from locations ticked in this tick, but they can enter any
+		//location, so the entrance phase looks at the active set again once they have moved
+		ticking = active.snapshot(ticking);
+		if(pool == null)
+		{
+			tickRows(0, rows);
+			exitRows(0, rows);
+			migrate();
+			entering = active.snapshot(entering);
+			enterRows(0, rows);
+		}else{
+			int grain = Math.max(1, rows / (pool.getParallelism() * 4));
+			//invoke() returns only once every band is done, so it is the barrier between phases
+			pool.invoke(new BandTask(TICK_PHASE, 0, rows, grain));
+			pool.invoke(new BandTask(EXIT_PHASE, 0, rows, grain));
+			migrate();
+			entering = active.snapshot(entering);
+			pool.invoke(new BandTask(ENTER_PHASE, 0, rows, grain));
+		}
+		callerStream.setState(callerState);
+		afterBites.fire(clock.getTick());
+		clock.advance();
+		lattice.releaseIdle(clock.getTick(), (long)Math.ceil(CHUNK_IDLE_SECONDS / timeStepSeconds));
+	}
+	
+	/**
+	 * hand the agents about to enter locations outside this world's domain to the migration
+	 * channel, and have the agents it brings in enter their locations
+	 */
+	private void migrate()
+	{
+		if(migration == null)
+		{
+			return;
+		}
+		ArrayList<Agent> leaving = new ArrayList<Agent>();
+		entering = active.snapshot(entering);
+		int end = rows * cols;
+		for(int cell = CellSet.next(entering, 0, end); cell < end; cell = CellSet.next(entering, cell + 1, end)){
+			int row = cell / cols;
+			int col = cell % cols;
+			if(decomposition.contains(part, row, col))
+			{
+				continue;
+			}
+			lattice.get(row, col).takeEntrants(leaving);
+			if(active.remove(cell))
+			{
+				lattice.deactivated(row, col);
+			}
+		}
+		for(Agent agent : leaving)
+		{
+			if(agent.placed)
+			{
+				addTally(agent.getState(), -1);
+			}
+			agent.dead = true;
+		}
+		List<Agent> arriving = migration.exchange(leaving);
+		for(Agent agent : arriving)
+		{
+			getLocation(agent.getRow(), agent.getColumn()).enter(agent);
+		}
+		migrants += leaving.size();
+	}
+	
+	/**
+	 * tick every active location in a band of rows. Agents only interact with agents in their own
+	 * location, and moves are buffered by Environment.enter/exit, so bands are independent
+	 * @param firstRow the first row of the band
+	 * @param endRow one past the last row of the band
+	 */
+	private void tickRows(int firstRow, int endRow)
+	{
+		long updates = 0;
+		int end = endRow * cols;
+		Birthplace here = birthplace.get();
+		try
+		{
+			for(int cell = CellSet.next(ticking, firstRow * cols, end); cell < end; cell = CellSet.next(ticking, cell + 1, end)){
+				Environment location = lattice.get(cell / cols, cell % cols);
+				updates += location.getPopulation();
+				here.cell = cell;
+				here.births = 0;
+				location.tick(timeStepSeconds);
 			}
+		}finally{
+			here.cell = -1;
+		}
+		agentUpdates.addAndGet(updates);
+	}
+	
+	/**
+	 * process the buffered exits of a band of rows. All exits have to be done before
+	 * any entrances because entering a location changes the agent's slot in AgentList
+	 * @param firstRow the first row of the band
+	 * @param endRow one past the last row of the band
+	 */
+	private void exitRows(int firstRow, int endRow)
+	{
+		int end = endRow * cols;
+		for(int cell = CellSet.next(ticking, firstRow * cols, end); cell < end; cell = CellSet.next(ticking, cell + 1, end)){
+			//empty exitant lists
+			lattice.get(cell / cols, cell % cols).doExits();
+		}
+	}
+	
+	/**
+	 * process the buffered entrances of a band of rows, and drop the locations that are
+	 * left empty from the active set
+	 * @param firstRow the first row of the band
+	 * @param endRow one past the last row of the band
+	 */
+	private void enterRows(int firstRow, int endRow)
+	{
+		int end = endRow * cols;
+		for(int cell = CellSet.next(entering, firstRow * cols, end); cell < end; cell = CellSet.next(entering, cell + 1, end)){
+			Environment location = lattice.get(cell / cols, cell % cols);
+			//empty entrant lists
+			location.doEntrances();
+			if(location.isIdle() && active.remove(cell))
+			{
+				lattice.deactivated(location.getRow(), location.getColumn());
+			}
+		}
+	}
+	
+	private static final int TICK_PHASE = 0;
+	private static final int EXIT_PHASE = 1;
+	private static final int ENTER_PHASE = 2;
+	
+	/**
+	 * fork-join task that splits a band of rows in half until it is small enough,
+	 * then runs one phase of the tick on it
+	 */
+	private class BandTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int phase;
+		private final int firstRow;
+		private final int endRow;
+		private final int grain;
+		
+		BandTask(int phase, int firstRow, int endRow, int grain)
+		{
+			this.phase = phase;
+			this.firstRow = firstRow;
+			this.endRow = endRow;
+			this.grain = grain;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			//mosquitoes created on the worker thread belong to this world
+			setCurrent(World.this);
+			if(endRow - firstRow <= grain)
+			{
+				if(phase == TICK_PHASE)
+				{
+					tickRows(firstRow, endRow);
+				}else if(phase == EXIT_PHASE){
+					exitRows(firstRow, endRow);
+				}else{
+					enterRows(firstRow, endRow);
+				}
+			}else{
+				int middle = (firstRow + endRow) >>> 1;
+				invokeAll(new BandTask(phase, firstRow, middle, grain),
+						new BandTask(phase, middle, endRow, grain));
+			}
+		}
+	}
+	
+	/**
+	 * @return the total number of agent tick() calls made since this world was constructed
+	 */
+	public long getAgentUpdates()
+	{
+		return agentUpdates.get();
+	}
+	
+	/**
+	 * place a newly infected human at a random lattice location. Every world of a
+	 * decomposition picks the same location, only the one that owns it places the human
+	 * @param strain the strain the new human is infected with
+	 * @return the infected human, or null if another world owns its location
+	 */
+	public Human introduceInfection(String strain)
+	{
+		setCurrent(this);
+		Environment groundZero = getRandomLocation();
+		if(!owns(groundZero.getRow(), groundZero.getColumn()))
+		{
+			return null;
+		}
+		Human patientZero = new Human(groundZero.getRow(), groundZero.getColumn());
+		patientZero.recieveDisease(strain);
+		groundZero.enter(patientZero);
+		return patientZero;
+	}
+	
+	/**
+	 * add to the world-wide tally of agents in a state. Called by Environment when an agent
+	 * is first placed, dies, or changes state
+	 * @param state the state
+	 * @param delta the change in the number of agents in that state
+	 */
+	void addTally(Disease.State state, int delta)
+	{
+		tally.addAndGet(state.ordinal(), delta);
+	}
+	
+	/**
+	 * rebuild the world-wide tallies from the locations' tallies, after agents were
+	 * moved around without going through enter/exit
+	 */
+	void recountTallies()
+	{
+		for(Disease.State state : Disease.State.values())
+		{
+			tally.set(state.ordinal(), 0);
 		}
-		for(int i = 0; i< lattice.length; i++){
-			for(int j = 0; j < lattice[i].length; j++){
-				//empty exitant lists
-				lattice[i][j].doExits();
-				//empty entrant lists
-				lattice[i][j].doEntrances();
+		for(int c = 0; c < lattice.getChunkCount(); c++){
+			Environment[] chunk = lattice.getChunk(c);
+			for(int i = 0; chunk != null && i < chunk.length; i++){
+				if(chunk[i] == null) continue;
+				addTally(Disease.State.SUSCEPTIBLE, chunk[i].countSusceptible());
+				addTally(Disease.State.INFECTED, chunk[i].countInfections());
+				addTally(Disease.State.RECOVERED, chunk[i].countRecovered());
 			}
 		}
-		//update calendar time
-		currTime.add(Calendar.SECOND, (int)timeStepSeconds);
 	}
+	
 	/**
-	 * count the number of infected agents in the simulation
+	 * count the number of infected agents in the simulation, including infected mosquitoes
+	 * kept as counts when the world uses mosquito compartments
 	 * @return the number of infected agents
 	 */
 	public int countInfections()
 	{
-		int count =0;
-		for(int i = 0; i< lattice.length; i++){
-			for(int j = 0; j < lattice[i].length; j++){
-				count += lattice[i][j].countInfections();			}
+		if(arrayEngine != null)
+		{
+			return arrayEngine.getEngine().countInfections();
 		}
-		return count;
+		return tally.get(Disease.State.INFECTED.ordinal());
 	}
 	
 	/**
@@ -212,49 +1002,91 @@ public class World {
 	 * @return  the number of recovered agents throughout the entire simulation
 	 */
 	public int countRecovered(){
-		int count=0;
-		for(int i = 0; i< lattice.length; i++){
-			for(int j = 0; j < lattice[i].length; j++){
-				count += lattice[i][j].countRecovered();	
-			}
+		if(arrayEngine != null)
+		{
+			return arrayEngine.getEngine().countRecovered();
 		}
-		return count;
+		return tally.get(Disease.State.RECOVERED.ordinal());
 	}
+	
+	/**
+	 * count the number of agents that have never been infected
+	 * @return the number of susceptible agents
+	 */
+	public int countSusceptible(){
+		if(arrayEngine != null)
+		{
+			return arrayEngine.getEngine().countSusceptible();
+		}
+		return tally.get(Disease.State.SUSCEPTIBLE.ordinal());
+	}
+	
+	/**
+	 * @return the seed all random number streams are derived from
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+	
+	/**
+	 * @return the number of ticks since the world was constructed
+	 */
+	public long getTickCount()
+	{
+		return clock.getTick();
+	}
+	
 	/**
 	 * get the number of rows in the environment lattice
 	 * @return the number of rows in the environment lattice
 	 */
-	public static int getRows()
+	public int getRows()
 	{
-		return lattice.length;
+		return rows;
 	}
 	/**
 	 * get the number of columns in the environment lattice
 	 * @return the number of columms in the environment lattice
 	 */
-	public static int getColumns()
+	public int getColumns()
 	{
-		return lattice[0].length;
+		return cols;
 	}
 	/**
-	 * draw this lattice location within the given render area on the provided graphics context
+	 * write every location's Environment.getDisplayState ordinal into a grid, row by row
+	 * @param states at least rows * columns bytes
+	 */
+	public void copyCellStates(byte[] states)
+	{
+		//locations that aren't allocated are empty
+		Arrays.fill(states, 0, rows * cols, (byte)Disease.State.NONE.ordinal());
+		for(int c = 0; c < lattice.getChunkCount(); c++){
+			Environment[] chunk = lattice.getChunk(c);
+			for(int i = 0; chunk != null && i < chunk.length; i++){
+				Environment location = chunk[i];
+				if(location != null)
+				{
+					states[location.getRow() * cols + location.getColumn()] = (byte)location.getDisplayState().ordinal();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * draw the whole lattice within the given render area on the provided graphics context.
+	 * Use a LatticeRenderer directly to zoom and pan
 	 * @param g the graphics context
-	 * @param renderArea a rectangle within which to draw this location
+	 * @param renderArea a rectangle within which to draw the lattice
 	 */
 	public void render(Graphics g, Rectangle renderArea)
 	{
-		g.setColor(Color.white);
-		g.fillRect(renderArea.x,renderArea.y,renderArea.width,renderArea.height);
-		g.setColor(Color.black);
-		//now divide up render area into equal parts for each Environment location
-		int locationWidth = renderArea.width / getColumns();
-		int locationHeight = renderArea.height / getRows();
-		for(int row = 0; row< lattice.length; row++){
-			for(int column = 0; column < lattice[row].length; column++){
-				Rectangle locationRender = new Rectangle(column*locationWidth, row*locationHeight, locationWidth, locationHeight);
-				lattice[row][column].render(g, locationRender);
-			}
+		if(renderer == null)
+		{
+			renderer = new LatticeRenderer();
 		}
+		renderer.update(this);
+		renderer.paint(g, renderArea);
 	}
 	
 }
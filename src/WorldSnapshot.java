@@ -0,0 +1,92 @@
+/*
+ *	This file is part of DiseaseSim version 0.3 -  an agent based modeling research tool	*
+ *	Copyright (C) 2012 Marek Laskowski				*
+ *											*
+ *	This program is free software: you can redistribute it and/or modify		*
+ *	it under the terms of the GNU General Public License as published by		*
+ *	the Free Software Foundation, either version 3 of the License, or		*
+ *	(at your option) any later version.						*
+ *											*
+ *	This program is distributed in the hope that it will be useful,			*
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of			*
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the			*
+ *	GNU General Public License for more details.					*
+ *											*
+ *	You should have received a copy of the GNU General Public License		*
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.		*
+ *											*
+ *	email: mareklaskowski@gmail.com							*
+ ****************************************************************************************/
+
+/**
+ * an immutable picture of a World after a tick: every location's display state, see
+ * World.copyCellStates, and the world's counters. Made by SimulationWorker on its own
+ * thread so the GUI can draw it while the world carries on ticking
+ */
+public class WorldSnapshot {
+	private final byte[] states;
+	private final int rows;
+	private final int cols;
+	private final long tick;
+	private final String time;
+	private final int infected;
+	private final int susceptible;
+	private final int recovered;
+	private final boolean finished;
+
+	/**
+	 * take a snapshot of a world. The world must not be ticking on another thread
+	 * @param world the world
+	 * @param finished true if the world will not be ticked again
+	 */
+	public WorldSnapshot(World world, boolean finished)
+	{
+		rows = world.getRows();
+		cols = world.getColumns();
+		states = new byte[rows * cols];
+		world.copyCellStates(states);
+		tick = world.getTickCount();
+		time = world.getClock().toString();
+		infected = world.countInfections();
+		susceptible = world.countSusceptible();
+		recovered = world.countRecovered();
+		this.finished = finished;
+	}
+
+	/**
+	 * color a renderer's image from this snapshot
+	 * @param renderer the renderer
+	 */
+	public void renderTo(LatticeRenderer renderer)
+	{
+		renderer.update(states, rows, cols);
+	}
+
+	/**
+	 * @param row a location's row
+	 * @param col a location's column
+	 * @return what Environment.getDisplayState returned for the location
+	 */
+	public Disease.State getState(int row, int col)
+	{
+		return Disease.State.values()[states[row * cols + col]];
+	}
+
+	public int getRows() { return rows; }
+	public int getColumns() { return cols; }
+	/**
+	 * @return the number of ticks the world had done
+	 */
+	public long getTick() { return tick; }
+	/**
+	 * @return the model time, see SimClock.toString
+	 */
+	public String getTime() { return time; }
+	public int getInfected() { return infected; }
+	public int getSusceptible() { return susceptible; }
+	public int getRecovered() { return recovered; }
+	/**
+	 * @return true if this is the last snapshot of the run
+	 */
+	public boolean isFinished() { return finished; }
+}
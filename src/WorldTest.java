@@ -1,4 +1,9 @@
 import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Vector;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -23,20 +28,21 @@ public class WorldTest {
 	 */
 	@Test
 	public void testRNG() {
-		World.seedRand(55);
+		World.seedRand(56);
 		int iterations = 0; //number of iterations until disease is extinct
 
-        //hardcoded values dependent on the seed(55), however it also seems to be dependent on
-		//computer time as well, changing every hour. Remains constant for 1hr periods, but changes
-		//the next hour
-		int knownIterations = 169;
-		int knownCountRecovered = 1;
+		//hardcoded values dependent on the seed(56), one where the infection spreads. The model clock starts at
+		//SimClock.DEFAULT_START rather than the computer's time, so they do not change.
+		//They do depend on the order a location ticks its inhabitants in: humans, then mosquitoes,
+		//and on the order agents enter a location in: by UID
+		int knownIterations = 6324;
+		int knownCountRecovered = 3781;
 		
 		//create the world
 		World theWorld = new World(50, 50, 3600.0, 0.5, 2);
         
         //add 1 infectious human agent to the world
-		Environment groundZero = World.getRandomLocation();
+		Environment groundZero = theWorld.getRandomLocation();
 		Disease newInfection = new Disease("ACGT");
 		Human patientZero = new Human(groundZero.getRow(), groundZero.getColumn());
 		patientZero.recieveDisease(newInfection.getStrain());
@@ -64,18 +70,17 @@ public class WorldTest {
         int numInfected = 100;
         
         //add numInfected number of infected individuals
-		Environment groundZero = World.getRandomLocation();
-		Disease newInfection = new Disease("ACGT");
-		Human patientZero = new Human(groundZero.getRow(), groundZero.getColumn());
-		patientZero.recieveDisease(newInfection.getStrain());
-		
+		Environment groundZero = theWorld.getRandomLocation();
 		for(int i=0; i<numInfected; i++){
-			groundZero.enter(patientZero);
+			Human patient = new Human(groundZero.getRow(), groundZero.getColumn());
+			patient.recieveDisease("ACGT");
+			groundZero.enter(patient);
 		}
 		groundZero.doEntrances();
 		
 		//check if the number of infected individuals inserted equals the countInfections() output
 		assertEquals(numInfected, theWorld.countInfections());
+		assertEquals(numInfected, groundZero.countInfections());
 	}
 	
 	/**
@@ -89,13 +94,11 @@ public class WorldTest {
         int expectedRecovered = numInfected;
         
         //add numInfected number of infected individuals
-		Environment groundZero = World.getRandomLocation();
-		Disease newInfection = new Disease("ACGT");
-		Human patientZero = new Human(groundZero.getRow(), groundZero.getColumn());
-		patientZero.recieveDisease(newInfection.getStrain());
-		
+		Environment groundZero = theWorld.getRandomLocation();
 		for(int i=0; i<numInfected; i++){
-			groundZero.enter(patientZero);
+			Human patient = new Human(groundZero.getRow(), groundZero.getColumn());
+			patient.recieveDisease("ACGT");
+			groundZero.enter(patient);
 		}
 		groundZero.doEntrances();
 		
@@ -103,11 +106,479 @@ public class WorldTest {
 		Vector<Agent> inhabitants = groundZero.getAll("HUMAN");
 		for(Agent agent:inhabitants){
 			for(Disease disease: agent.infections){
-				disease.setState(Disease.State.RECOVERED);
+				agent.setDiseaseState(disease, Disease.State.RECOVERED);
 			}
 		}
 		
 		//check if the number of individuals expected to be recovered matches the output of countRecovered()
 		assertEquals(expectedRecovered, theWorld.countRecovered());
+		assertEquals(0, theWorld.countInfections());
+		assertEquals(expectedRecovered, groundZero.countRecovered());
+	}
+	
+	/**
+	 * Enters the same infected agent numEntered times before the entrances are done:
+	 * it must be taken in once, and counted once by the location and the world
+	 */
+	@Test
+	public void testRepeatedEnter(){
+        World theWorld = new World(50, 50, 3600.0, 0.5, 2);
+        int numEntered = 100;
+        
+		Environment groundZero = theWorld.getRandomLocation();
+		//take in the residents the world was built with first
+		groundZero.doEntrances();
+		int humans = groundZero.getAll("HUMAN").size();
+		Human patientZero = new Human(groundZero.getRow(), groundZero.getColumn());
+		patientZero.recieveDisease("ACGT");
+		for(int i=0; i<numEntered; i++){
+			groundZero.enter(patientZero);
+		}
+		groundZero.doEntrances();
+		
+		assertEquals(humans + 1, groundZero.getAll("HUMAN").size());
+		assertEquals(1, theWorld.countInfections());
+		assertEquals(1, groundZero.countInfections());
+		
+		//once it has been taken in it can enter again
+		Environment next = theWorld.getLocation((groundZero.getRow() + 1) % 50, groundZero.getColumn());
+		groundZero.exit(patientZero);
+		next.enter(patientZero);
+		groundZero.doExits();
+		next.doEntrances();
+		assertEquals(1, theWorld.countInfections());
+		assertEquals(0, groundZero.countInfections());
+		assertEquals(1, next.countInfections());
+	}
+	
+	/**
+	 * Checks the incrementally maintained tallies against a full scan of every agent
+	 * while an outbreak with infections, recoveries and mosquito deaths is running.
+	 */
+	@Test
+	public void testTalliesMatchScan(){
+		World.seedRand(7);
+		World theWorld = new World(20, 20, 3600.0, 0.5, 20);
+		for(int i=0; i<20; i++){
+			theWorld.introduceInfection("ACGT");
+		}
+		for(int t=0; t<400; t++){
+			theWorld.tick();
+			if(t % 50 == 0){
+				int[] scan = new int[Disease.State.values().length];
+				for(int row=0; row<theWorld.getRows(); row++){
+					for(int col=0; col<theWorld.getColumns(); col++){
+						Environment location = theWorld.getLocation(row, col);
+						int[] local = new int[scan.length];
+						for(Agent agent : location.getAll(Human.type)) local[agent.getState().ordinal()]++;
+						for(Agent agent : location.getAll(Mosquito.type)) local[agent.getState().ordinal()]++;
+						assertEquals(local[Disease.State.INFECTED.ordinal()], location.countInfections());
+						assertEquals(local[Disease.State.RECOVERED.ordinal()], location.countRecovered());
+						assertEquals(local[Disease.State.SUSCEPTIBLE.ordinal()], location.countSusceptible());
+						for(int k=0; k<scan.length; k++) scan[k] += local[k];
+					}
+				}
+				assertEquals(scan[Disease.State.INFECTED.ordinal()], theWorld.countInfections());
+				assertEquals(scan[Disease.State.RECOVERED.ordinal()], theWorld.countRecovered());
+				assertEquals(scan[Disease.State.SUSCEPTIBLE.ordinal()], theWorld.countSusceptible());
+			}
+		}
+	}
+	
+	/**
+	 * Tests the parallel tick by checking that no humans are lost or duplicated when
+	 * they move between row bands handled by different threads.
+	 */
+	@Test
+	public void testParallelTickConservesHumans(){
+		World theWorld = new World(50, 50, 3600.0, 0.5, 2);
+		theWorld.introduceInfection("ACGT");
+		//the first tick places the residents into their locations
+		theWorld.tick();
+		int humans = countHumans(theWorld);
+		theWorld.setParallelism(4);
+		for(int i=0; i<48; i++){
+			theWorld.tick();
+		}
+		theWorld.setParallelism(1);
+		assertEquals(humans, countHumans(theWorld));
+	}
+	
+	/**
+	 * Runs the same outbreak with mosquito agents serially and on 4 threads. Mosquitoes are
+	 * born during the parallel tick, and their UIDs decide the order agents enter locations
+	 * in, so the tallies and the events, UIDs included, must match every tick. The parallel
+	 * world also has a UID taken off its counter after every tick, as another thread could
+	 * have taken it first; births must not get different UIDs for that
+	 */
+	@Test
+	public void testParallelBirthsMatchSerial(){
+		World serial = new World(30, 30, 3600.0, 0.5, 3, 23);
+		List<String> serialEvents = recordEvents(serial);
+		serial.introduceInfection("ACGT");
+		World parallel = new World(30, 30, 3600.0, 0.5, 3, 23);
+		List<String> parallelEvents = recordEvents(parallel);
+		parallel.introduceInfection("ACGT");
+		parallel.setParallelism(4);
+		for(int i=0; i<400; i++){
+			serial.tick();
+			parallel.tick();
+			new Human(0, 0);
+			assertEquals(serial.countInfections(), parallel.countInfections());
+			assertEquals(serial.countRecovered(), parallel.countRecovered());
+			assertEquals(serial.countSusceptible(), parallel.countSusceptible());
+		}
+		parallel.setParallelism(1);
+		assertTrue(serial.getMosquitoPool().getRequests() > 0);
+		assertTrue(serial.countRecovered() > 1);
+		//the threads record in any order, the events themselves must be the same
+		Collections.sort(serialEvents);
+		Collections.sort(parallelEvents);
+		assertEquals(serialEvents, parallelEvents);
+	}
+	
+	/**
+	 * @param theWorld the world
+	 * @return a list the world's events are added to from now on, one line per event
+	 */
+	private static List<String> recordEvents(World theWorld){
+		final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		theWorld.setEventSink(new EventSink(){
+			@Override
+			public void record(EventSink.Kind kind, long tick, long uid, String agentType, String strain, int row, int col){
+				events.add(tick + "," + kind + "," + agentType + "," + uid + "," + strain + "," + row + "," + col);
+			}
+			@Override
+			public void close(){
+			}
+		});
+		return events;
+	}
+	
+	/**
+	 * Ticks two worlds with the same seed in lock step next to a third, differently seeded one;
+	 * the two must stay identical, so no state leaks between worlds.
+	 */
+	@Test
+	public void testWorldsAreIndependent(){
+		World first = new World(30, 30, 3600.0, 0.5, 5, 11);
+		first.introduceInfection("ACGT");
+		World other = new World(30, 30, 3600.0, 0.5, 5, 12);
+		other.introduceInfection("ACGT");
+		World second = new World(30, 30, 3600.0, 0.5, 5, 11);
+		second.introduceInfection("ACGT");
+		for(int i=0; i<200; i++){
+			first.tick();
+			other.tick();
+			second.tick();
+			assertEquals(first.countInfections(), second.countInfections());
+			assertEquals(first.countRecovered(), second.countRecovered());
+			assertEquals(first.countSusceptible(), second.countSusceptible());
+		}
+		assertEquals(countHumans(first), countHumans(second));
+	}
+	
+	/**
+	 * Runs a world with mosquito compartments: the world's infection count must match the sum
+	 * over the locations and mosquitoes must catch the disease. Without an outbreak the mosquito
+	 * population must stay around the density; with one, infected mosquitoes killed while
+	 * feeding bring it below that.
+	 */
+	@Test
+	public void testMosquitoCompartments(){
+		World quiet = new World(20, 20, 3600.0, 200, 5, 3);
+		quiet.useMosquitoCompartments(true);
+		for(int i=0; i<300; i++){
+			quiet.tick();
+		}
+		long quietMosquitoes = quiet.countCompartmentMosquitoes(Disease.State.SUSCEPTIBLE);
+		assertEquals(0, quiet.countCompartmentMosquitoes(Disease.State.INFECTED));
+		assertEquals(200 * 20 * 20, quietMosquitoes, 0.05 * 200 * 20 * 20);
+		
+		World theWorld = new World(20, 20, 3600.0, 200, 5, 3);
+		theWorld.useMosquitoCompartments(true);
+		theWorld.introduceInfection("ACGT");
+		long mostInfectedMosquitoes = 0;
+		for(int i=0; i<300; i++){
+			theWorld.tick();
+			int infected = 0;
+			for(int row=0; row<theWorld.getRows(); row++){
+				for(int col=0; col<theWorld.getColumns(); col++){
+					infected += theWorld.getLocation(row, col).countInfections();
+				}
+			}
+			assertEquals(infected, theWorld.countInfections());
+			mostInfectedMosquitoes = Math.max(mostInfectedMosquitoes, theWorld.countCompartmentMosquitoes(Disease.State.INFECTED));
+		}
+		assertTrue(mostInfectedMosquitoes > 0);
+		long mosquitoes = theWorld.countCompartmentMosquitoes(Disease.State.SUSCEPTIBLE)
+				+ theWorld.countCompartmentMosquitoes(Disease.State.INFECTED);
+		assertTrue(mosquitoes < quietMosquitoes);
+	}
+	
+	/**
+	 * @param theWorld the world to count
+	 * @return the number of humans in the whole lattice
+	 */
+	private static int countHumans(World theWorld){
+		int count = 0;
+		for(int row=0; row<theWorld.getRows(); row++){
+			for(int col=0; col<theWorld.getColumns(); col++){
+				count += theWorld.getLocation(row, col).getAll(Human.type).size();
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Runs the testRNG scenario on the struct-of-arrays engine, then copies the result back
+	 * into the lattice and checks that the object API agrees with the engine.
+	 */
+	@Test
+	public void testArrayEngine(){
+		World.seedRand(56);
+		World theWorld = new World(50, 50, 3600.0, 0.5, 2);
+		theWorld.introduceInfection("ACGT");
+		theWorld.tick();
+		int humans = countHumans(theWorld);
+		int susceptible = theWorld.countSusceptible();
+		
+		theWorld.useArrayEngine(true);
+		assertEquals(1, theWorld.countInfections());
+		assertEquals(susceptible, theWorld.countSusceptible());
+		int iterations = 0;
+		while(theWorld.countInfections() > 0){
+			iterations++;
+			theWorld.tick();
+		}
+		assertTrue(iterations >= 168);
+		int recovered = theWorld.countRecovered();
+		assertTrue(recovered >= 1);
+		
+		//the infections happened inside the engine, switching back must not report them again
+		final int[] reported = new int[1];
+		theWorld.setEventSink(new EventSink(){
+			@Override
+			public void record(EventSink.Kind kind, long tick, long uid, String agentType, String strain, int row, int col){
+				reported[0]++;
+			}
+			@Override
+			public void close(){
+			}
+		});
+		theWorld.useArrayEngine(false);
+		assertEquals(0, reported[0]);
+		assertEquals(humans, countHumans(theWorld));
+		assertEquals(0, theWorld.countInfections());
+		assertEquals(recovered, theWorld.countRecovered());
+	}
+	
+	/**
+	 * a human recovers in the tick at whose end the infection is older than the infectious
+	 * period, and mosquitoes have their deaths of old age waiting on the timeline
+	 */
+	@Test
+	public void testScheduledRecovery(){
+		World theWorld = new World(5, 5, 3600.0, 0.5, 0, 7);
+		int mosquitoes = theWorld.getScheduledEvents();
+		Environment home = theWorld.getLocation(2, 2);
+		Human patient = new Human(2, 2);
+		patient.recieveDisease("ACGT");
+		home.enter(patient);
+		home.doEntrances();
+		assertEquals(mosquitoes + 1, theWorld.getScheduledEvents());
+		int ticks = (int)(Human.infectious_period / 3600.0);
+		for(int i = 0; i < ticks; i++){
+			theWorld.tick();
+		}
+		assertTrue(patient.isInfected());
+		theWorld.tick();
+		assertTrue(patient.isRecovered());
+		for(Agent agent : theWorld.getLocation(2, 2).getAll(Mosquito.type)){
+			assertTrue(((Mosquito)agent).getAge() <= Mosquito.lifespan_max);
+		}
+	}
+	
+	/**
+	 * after every tick the active locations are exactly the occupied ones
+	 */
+	@Test
+	public void testActiveLocations(){
+		World theWorld = new World(40, 40, 3600.0, 0.5, 0.05, 9);
+		theWorld.introduceInfection("ACGT");
+		for(int t = 0; t < 48; t++){
+			theWorld.tick();
+			int occupied = 0;
+			for(int i = 0; i < theWorld.getRows(); i++){
+				for(int j = 0; j < theWorld.getColumns(); j++){
+					if(theWorld.getLocation(i, j).getPopulation() > 0) occupied++;
+				}
+			}
+			assertEquals(occupied, theWorld.getActiveLocations());
+		}
+	}
+	
+	/**
+	 * chunks are only allocated where agents go, and released a day after the last one left
+	 */
+	@Test
+	public void testChunksReleased(){
+		World theWorld = new World(300, 300, 3600.0, 0.5, 0, 13);
+		theWorld.setEventSink(new NullEventSink());
+		assertEquals(0, theWorld.getLattice().getAllocatedChunks());
+		assertNull(theWorld.findLocation(200, 200));
+		//a mosquito that dies of old age in the second tick, the first one its death can be scheduled for
+		Mosquito old = new Mosquito(200, 200, Mosquito.lifespan_max - 1);
+		theWorld.getLocation(200, 200).enter(old);
+		theWorld.getLocation(200, 200).doEntrances();
+		assertEquals(1, theWorld.getLattice().getAllocatedChunks());
+		assertNotNull(theWorld.findLocation(200, 200));
+		theWorld.tick();
+		theWorld.tick();
+		assertEquals(0, theWorld.getActiveLocations());
+		for(int t = 0; t < 24; t++){
+			assertEquals(1, theWorld.getLattice().getAllocatedChunks());
+			theWorld.tick();
+		}
+		assertEquals(0, theWorld.getLattice().getAllocatedChunks());
+		assertEquals(0, theWorld.getLocation(200, 200).getPopulation());
+	}
+	
+	/**
+	 * with and without batched bites the reserve mosquito bites each human with probability
+	 * Mosquito.bite_rate per tick; every bite on an infected human takes a new reserve mosquito
+	 */
+	@Test
+	public void testBatchedBites(){
+		int humans = 400;
+		int ticks = 100;
+		for(boolean batched : new boolean[]{false, true}){
+			World theWorld = new World(1, 1, 3600.0, 0, 0, 17);
+			theWorld.setEventSink(new NullEventSink());
+			theWorld.useBatchedBites(batched);
+			Environment here = theWorld.getLocation(0, 0);
+			for(int i = 0; i < humans; i++){
+				Human patient = new Human(0, 0);
+				patient.recieveDisease("ACGT");
+				here.enter(patient);
+			}
+			here.doEntrances();
+			for(int t = 0; t < ticks; t++){
+				theWorld.tick();
+			}
+			long bites = theWorld.getMosquitoPool().getRequests() - 1;
+			double expected = humans * ticks * Mosquito.bite_rate;
+			assertEquals(expected, bites, 5 * Math.sqrt(expected));
+			assertEquals(humans, here.countHumans());
+		}
+	}
+	
+	/**
+	 * agents entering one location from many threads at once all arrive, once each, in order of UID
+	 */
+	@Test
+	public void testConcurrentEntrances() throws InterruptedException{
+		final World theWorld = new World(1, 1, 3600.0, 0, 0, 19);
+		final Environment here = theWorld.getLocation(0, 0);
+		final int perThread = 5000;
+		Thread[] threads = new Thread[8];
+		final Human[][] movers = new Human[threads.length][perThread];
+		for(int t = 0; t < threads.length; t++){
+			for(int i = 0; i < perThread; i++){
+				movers[t][i] = new Human(0, 0);
+			}
+		}
+		for(int t = 0; t < threads.length; t++){
+			final Human[] mine = movers[t];
+			threads[t] = new Thread(){
+				@Override
+				public void run(){
+					for(Human human : mine){
+						here.enter(human);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread thread : threads){
+			thread.join();
+		}
+		here.doEntrances();
+		assertEquals(threads.length * perThread, here.countHumans());
+		Vector<Agent> humans = here.getAll(Human.type);
+		for(int i = 1; i < humans.size(); i++){
+			assertTrue(humans.get(i - 1).getUID() < humans.get(i).getUID());
+		}
+		assertFalse(here.isIdle());
+	}
+	
+	/**
+	 * an engine keeping its agents in a mapped file follows the same trajectory as one keeping
+	 * them on the heap, and restarting it from a checkpoint doesn't change that
+	 */
+	@Test
+	public void testMappedArrayEngine() throws IOException{
+		File file = File.createTempFile("agents", ".bin");
+		file.deleteOnExit();
+		ArrayEngine heap = ArrayEngine.populate(20, 20, 3600.0, 2, 37);
+		ArrayEngine mapped = ArrayEngine.populate(file, 20, 20, 3600.0, 2, 37);
+		try{
+			ArrayEngine.create(file, 20, 20, 3600.0, 37);
+			fail("a file that is still mapped must not be replaced");
+		}catch(IOException expected){
+		}
+		int strain = StrainRegistry.id("ACGT");
+		heap.infectHuman(0, strain, 0);
+		mapped.infectHuman(0, strain, 0);
+		for(int tick = 0; tick < 100; tick++){
+			heap.tick(tick, tick % 24);
+			mapped.tick(tick, tick % 24);
+		}
+		mapped.checkpoint();
+		mapped.tick(100, 4);
+		mapped.close();
+		try{
+			ArrayEngine.open(file);
+			fail("a file left in the middle of a tick must not be reopened");
+		}catch(IOException expected){
+		}
+		
+		mapped = ArrayEngine.populate(file, 20, 20, 3600.0, 2, 37);
+		mapped.infectHuman(0, strain, 0);
+		for(int tick = 0; tick < 100; tick++){
+			mapped.tick(tick, tick % 24);
+		}
+		mapped.checkpoint();
+		mapped.close();
+		mapped = ArrayEngine.open(file);
+		for(int tick = 100; tick < 200; tick++){
+			heap.tick(tick, tick % 24);
+			mapped.tick(tick, tick % 24);
+		}
+		assertEquals(heap.getTime(), mapped.getTime(), 0);
+		assertEquals(heap.countInfections(), mapped.countInfections());
+		assertEquals(heap.countRecovered(), mapped.countRecovered());
+		assertTrue(heap.countRecovered() > 0);
+		assertEquals(heap.getHumanCount(), mapped.getHumanCount());
+		for(int h = 0; h < heap.getHumanCount(); h++){
+			assertEquals(heap.getHumanRow(h), mapped.getHumanRow(h));
+			assertEquals(heap.getHumanColumn(h), mapped.getHumanColumn(h));
+			assertEquals(heap.getHumanState(h), mapped.getHumanState(h));
+		}
+		assertEquals(heap.getMosquitoCount(), mapped.getMosquitoCount());
+		for(int m = 0; m < heap.getMosquitoCount(); m++){
+			assertEquals(heap.getMosquitoAge(m), mapped.getMosquitoAge(m), 0);
+			assertEquals(heap.getMosquitoState(m), mapped.getMosquitoState(m));
+		}
+		
+		//changes between ticks make the file incomplete too
+		mapped.checkpoint();
+		mapped.addHuman(1L << 40, 0, 0, 0, 0);
+		mapped.close();
+		try{
+			ArrayEngine.open(file);
+			fail("a file changed after its checkpoint must not be reopened");
+		}catch(IOException expected){
+		}
 	}
 }